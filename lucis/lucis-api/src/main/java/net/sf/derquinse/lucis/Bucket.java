@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.derquinse.lucis;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Facet bucket: a field value, the number of hits with that value and the buckets of the next
+ * level, if any.
+ * @author Andres Rodriguez
+ */
+public class Bucket implements Serializable {
+	private static final long serialVersionUID = -6105227406335418722L;
+	/** Field value. */
+	private final String value;
+	/** Number of hits. */
+	private final int hits;
+	/** Buckets of the next level. */
+	private final List<Bucket> buckets;
+
+	public Bucket(final String value, final int hits, final List<Bucket> buckets) {
+		if (value == null) {
+			throw new NullPointerException("Value argument is required");
+		}
+		this.value = value;
+		this.hits = hits;
+		if (buckets == null) {
+			this.buckets = Collections.emptyList();
+		} else {
+			this.buckets = buckets;
+		}
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	public int getHits() {
+		return hits;
+	}
+
+	public List<Bucket> getBuckets() {
+		return buckets;
+	}
+}
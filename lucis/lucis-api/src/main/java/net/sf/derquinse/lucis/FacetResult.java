@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.derquinse.lucis;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Faceted search result. Buckets are sorted by decreasing number of hits.
+ * @author Andres Rodriguez
+ */
+public class FacetResult extends Result {
+	private static final long serialVersionUID = 8741652183564914374L;
+	/** First level buckets. */
+	private final List<Bucket> buckets;
+
+	public FacetResult(final int totalHits, final float maxScore, final long time, final List<Bucket> buckets) {
+		super(totalHits, maxScore, time);
+		if (buckets == null) {
+			this.buckets = Collections.emptyList();
+		} else {
+			this.buckets = buckets;
+		}
+	}
+
+	public List<Bucket> getBuckets() {
+		return buckets;
+	}
+}
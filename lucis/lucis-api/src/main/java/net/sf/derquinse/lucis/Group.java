@@ -44,6 +44,11 @@ public class Group implements Serializable {
 		return hits;
 	}
 
+	public int addHits(int n) {
+		hits += n;
+		return hits;
+	}
+
 	public Set<String> getGroupNames() {
 		if (groups == null) {
 			return Collections.emptySet();
@@ -31,6 +31,8 @@ public class Page<T> extends Result implements Iterable<T> {
 	private final int firstResult;
 	/** Items returned by the query. */
 	private final List<T> items;
+	/** Cursor to request the next page, if any. */
+	private final String cursor;
 
 	/**
 	 * Returns the empty page.
@@ -43,7 +45,13 @@ public class Page<T> extends Result implements Iterable<T> {
 	}
 
 	public Page(final int totalHits, final float maxScore, final long time, final int firstResult, final List<T> items) {
+		this(totalHits, maxScore, time, firstResult, items, null);
+	}
+
+	public Page(final int totalHits, final float maxScore, final long time, final int firstResult,
+			final List<T> items, final String cursor) {
 		super(totalHits, maxScore, time);
+		this.cursor = cursor;
 		this.firstResult = firstResult;
 		if (items == null) {
 			this.items = Collections.emptyList();
@@ -68,6 +76,14 @@ public class Page<T> extends Result implements Iterable<T> {
 		return items;
 	}
 
+	/**
+	 * Returns the opaque cursor to request the next page.
+	 * @return The cursor or {@code null} if this is the last page.
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+
 	public T get(int index) {
 		return items.get(firstResult + index);
 	}
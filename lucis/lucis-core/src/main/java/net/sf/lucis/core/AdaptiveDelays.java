@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Random;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Adaptive delay policy. The task is rescheduled immediately after a full batch and after the
+ * minimum delay after any other batch. Consecutive idle executions and errors double the delay up
+ * to the configured caps. A random jitter is applied to the idle and error delays in order to
+ * spread the load of many indexes. This class is stateful: each instance must be used by a single
+ * indexing service.
+ * @author Andres Rodriguez
+ */
+@ThreadSafe
+public final class AdaptiveDelays implements DelayPolicy {
+	/** Default jitter. */
+	private static final double DEFAULT_JITTER = 0.1;
+
+	/** Minimum delay. */
+	private final long min;
+	/** Maximum idle delay. */
+	private final long max;
+	/** Maximum error delay. */
+	private final long maxError;
+	/** Number of operations of a full batch (non-positive to disable). */
+	private final int fullBatch;
+	/** Jitter factor. */
+	private final double jitter;
+	/** Random source for the jitter. */
+	private final Random random = new Random();
+	/** Current idle delay. */
+	@GuardedBy("this")
+	private long idle = 0L;
+	/** Current error delay. */
+	@GuardedBy("this")
+	private long error = 0L;
+
+	private AdaptiveDelays(long min, long max, long maxError, int fullBatch, double jitter) {
+		checkArgument(min > 0, "The minimum delay must be positive");
+		checkArgument(max >= min, "The maximum delay must be greater or equal than the minimum one");
+		checkArgument(maxError >= min, "The maximum error delay must be greater or equal than the minimum one");
+		checkArgument(jitter >= 0.0 && jitter < 1.0, "The jitter must be in [0, 1)");
+		this.min = min;
+		this.max = max;
+		this.maxError = maxError;
+		this.fullBatch = fullBatch;
+		this.jitter = jitter;
+	}
+
+	/**
+	 * Creates a new adaptive delay policy.
+	 * @param min Minimum delay in ms.
+	 * @param max Maximum idle delay in ms.
+	 * @param maxError Maximum error delay in ms.
+	 * @param fullBatch Number of operations of a full batch (non-positive to disable).
+	 * @param jitter Jitter factor, in [0, 1).
+	 */
+	public static AdaptiveDelays of(long min, long max, long maxError, int fullBatch, double jitter) {
+		return new AdaptiveDelays(min, max, maxError, fullBatch, jitter);
+	}
+
+	/**
+	 * Creates a new adaptive delay policy with the same maximum for idle and error delays and the
+	 * default jitter.
+	 * @param min Minimum delay in ms.
+	 * @param max Maximum delay in ms.
+	 * @param fullBatch Number of operations of a full batch (non-positive to disable).
+	 */
+	public static AdaptiveDelays of(long min, long max, int fullBatch) {
+		return new AdaptiveDelays(min, max, max, fullBatch, DEFAULT_JITTER);
+	}
+
+	public long getMin() {
+		return min;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public long getMaxError() {
+		return maxError;
+	}
+
+	public int getFullBatch() {
+		return fullBatch;
+	}
+
+	public double getJitter() {
+		return jitter;
+	}
+
+	public synchronized long afterBatch(int operations) {
+		idle = 0L;
+		error = 0L;
+		if (fullBatch > 0 && operations >= fullBatch) {
+			return 0L;
+		}
+		return min;
+	}
+
+	public synchronized long afterIdle() {
+		error = 0L;
+		idle = next(idle, max);
+		return jitter(idle);
+	}
+
+	public synchronized long afterError() {
+		error = next(error, maxError);
+		return jitter(error);
+	}
+
+	/** Computes the next back-off value. */
+	private long next(long current, long cap) {
+		if (current <= 0L) {
+			return min;
+		}
+		return Math.min(cap, current > cap / 2 ? cap : current * 2);
+	}
+
+	/** Applies the jitter to a delay. */
+	@GuardedBy("this")
+	private long jitter(long delay) {
+		if (jitter == 0.0) {
+			return delay;
+		}
+		final double factor = 1.0 + jitter * (2.0 * random.nextDouble() - 1.0);
+		return Math.max(0L, (long) (delay * factor));
+	}
+}
@@ -22,7 +22,8 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 
 /**
- * Document adder for full indexers. Implementations are not thread-safe.
+ * Document adder for full indexers. Implementations are not thread-safe unless they implement
+ * {@link ConcurrentAdder}.
  * @author Andres Rodriguez
  */
 @NotThreadSafe
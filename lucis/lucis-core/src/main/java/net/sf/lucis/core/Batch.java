@@ -17,55 +17,140 @@ package net.sf.lucis.core;
 
 import static net.sf.lucis.core.Interruption.throwIfInterrupted;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
 
-import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * Class representing the set of operations to be performed in order to take the index to the given
- * checkpoint. Objects of this class are built using a batch builder.
+ * checkpoint. Objects of this class are built using a batch builder. Builders may spill the
+ * additions to a temporary file once a memory threshold is exceeded. Such batches must be discarded
+ * once they are no longer needed.
  * @author Andres Rodriguez
  * @param <T> Checkpoint type.
  * @param <P> Payload type.
  */
 public final class Batch<T, P> {
-	/** Map Entry to term function. */
-	private static final Function<Entry<String, String>, Term> TERM_BUILDER = new Function<Entry<String, String>, Term>() {
-		public Term apply(Entry<String, String> entry) {
-			return new Term(entry.getKey(), entry.getValue());
-		}
-	};
+	/** Empty term array. */
+	private static final Term[] NO_TERMS = new Term[0];
+	/** Default maximum estimated size in bytes of the additions pinned in memory after spilling. */
+	public static final long DEFAULT_PINNED_LIMIT = 16L * 1024L * 1024L;
 
 	/** The final checkpoint. */
 	private final T checkpoint;
 	/** Payload. */
 	private final P payload;
-	/** Additions. */
+	/** Additions held in memory. */
 	private final ImmutableList<Addition> additions;
-	/** Deletions. */
-	private final ImmutableMultimap<String, String> deletions;
+	/** Spilled additions. */
+	@Nullable
+	private final BatchSpill spill;
+	/** Deletions by term, grouped by field. */
+	private final Term[] deletions;
+	/** Deletions by query. */
+	private final ImmutableList<Query> queryDeletions;
+	/** Updates. */
+	private final ImmutableList<Addition> updates;
 	/** Whether the index must be recreated before applying the batch. */
 	private final boolean recreate;
+	/** Estimated size in bytes. */
+	private final long estimatedBytes;
 
 	private Batch(final T checkpoint, final P payload, final Builder<T> builder) {
 		this.checkpoint = checkpoint;
 		this.payload = payload;
-		this.additions = ImmutableList.copyOf(builder.additions);
-		this.deletions = builder.deletions.build();
+		this.additions = builder.additions.build();
+		this.spill = builder.spill;
+		this.deletions = terms(builder.deletions, builder.updates.keySet());
+		this.updates = ImmutableList.copyOf(builder.updates.values());
+		this.queryDeletions = builder.queryDeletions.build();
 		this.recreate = builder.recreate;
+		this.estimatedBytes = builder.bytes;
+	}
+
+	/**
+	 * Flattens the deletion terms grouped by field. Terms covered by an update are skipped, as the
+	 * update performs the deletion.
+	 */
+	private static Term[] terms(Map<String, List<Term>> deletions, Set<Term> updated) {
+		if (deletions.isEmpty()) {
+			return NO_TERMS;
+		}
+		final List<Term> list = Lists.newArrayList();
+		for (List<Term> terms : deletions.values()) {
+			for (Term term : terms) {
+				if (!updated.contains(term)) {
+					list.add(term);
+				}
+			}
+		}
+		return list.isEmpty() ? NO_TERMS : list.toArray(new Term[list.size()]);
+	}
+
+	/** Returns the estimated size in bytes of a document. */
+	private static long estimate(Document document) {
+		long bytes = 0L;
+		for (Fieldable field : document.getFields()) {
+			bytes += estimate(field.name());
+			if (field.isBinary()) {
+				bytes += field.getBinaryLength();
+			} else {
+				bytes += estimate(field.stringValue());
+			}
+		}
+		return bytes;
+	}
+
+	/** Returns the estimated size in bytes of a string. */
+	private static long estimate(String value) {
+		return value != null ? 2L * value.length() : 0L;
 	}
 
 	public boolean isEmpty() {
-		return additions.isEmpty() && deletions.isEmpty();
+		return additions.isEmpty() && spill == null && deletions.length == 0 && queryDeletions.isEmpty()
+				&& updates.isEmpty();
+	}
+
+	/** Returns the number of operations (additions, updates and deletions) in the batch. */
+	public int size() {
+		return additions.size() + (spill != null ? spill.size() : 0) + deletions.length + queryDeletions.size()
+				+ updates.size();
+	}
+
+	/** Returns whether some of the additions have been spilled to disk. */
+	public boolean isSpilled() {
+		return spill != null;
+	}
+
+	/** Releases the temporary file of a spilled batch. Spilled additions are no longer available. */
+	public void discard() {
+		if (spill != null) {
+			spill.discard();
+		}
+	}
+
+	/** Returns the estimated size in bytes of the documents and terms in the batch. */
+	public long getEstimatedBytes() {
+		return estimatedBytes;
 	}
 
 	public T getCheckpoint() {
@@ -77,12 +162,61 @@ public final class Batch<T, P> {
 		return payload;
 	}
 
+	/**
+	 * Returns every addition. Spilled additions are read into memory, so {@link #additions()} should
+	 * be preferred.
+	 */
 	public ImmutableList<Addition> getAdditions() {
-		return additions;
+		if (spill == null) {
+			return additions;
+		}
+		return ImmutableList.copyOf(additions());
+	}
+
+	/** Returns the additions, reading the spilled ones as they are needed. */
+	public Iterable<Addition> additions() {
+		if (spill == null) {
+			return additions;
+		}
+		final Iterable<Addition> spilled = new Iterable<Addition>() {
+			public Iterator<Addition> iterator() {
+				return spill.iterator();
+			}
+		};
+		return Iterables.concat(additions, spilled);
 	}
 
-	public Iterable<Term> getDeletions() {
-		return Iterables.transform(deletions.entries(), TERM_BUILDER);
+	/** Returns the deletions by term, grouped by field. */
+	public List<Term> getDeletions() {
+		return Collections.unmodifiableList(Arrays.asList(deletions));
+	}
+
+	/**
+	 * Deletes the documents matching the deletions of the batch from an index writer, with a single
+	 * bulk call for the terms, grouped by field, and another one for the queries. The terms are
+	 * passed without copying them, as the writer does not modify them.
+	 * @param writer Index writer to use.
+	 */
+	public void deleteFrom(IndexWriter writer) throws IOException {
+		if (deletions.length > 0) {
+			writer.deleteDocuments(deletions);
+		}
+		if (!queryDeletions.isEmpty()) {
+			writer.deleteDocuments(queryDeletions.toArray(new Query[queryDeletions.size()]));
+		}
+	}
+
+	/** Returns the deletions by query. */
+	public ImmutableList<Query> getQueryDeletions() {
+		return queryDeletions;
+	}
+
+	/**
+	 * Returns the updates, at most one per term. Updates are applied after the deletions and before
+	 * the additions.
+	 */
+	public ImmutableList<Addition> getUpdates() {
+		return updates;
 	}
 
 	public boolean isRecreate() {
@@ -90,17 +224,92 @@ public final class Batch<T, P> {
 	}
 
 	public static <T> Builder<T> builder() {
-		return new Builder<T>();
+		return new Builder<T>(null, -1L);
+	}
+
+	/**
+	 * Returns a builder that spills the additions to a temporary file once the estimated size of the
+	 * additions held in memory exceeds a threshold. Documents with reader or token stream values are
+	 * always kept in memory, up to {@link #DEFAULT_PINNED_LIMIT} bytes. Spilling builders must only be
+	 * used to build one batch.
+	 * @param directory Directory for the temporary file ({@code null} for the default one).
+	 * @param threshold Memory threshold in bytes.
+	 */
+	public static <T> Builder<T> builder(@Nullable File directory, long threshold) {
+		return builder(directory, threshold, DEFAULT_PINNED_LIMIT);
+	}
+
+	/**
+	 * Returns a builder that spills the additions to a temporary file once the estimated size of the
+	 * additions held in memory exceeds a threshold. Documents with reader or token stream values are
+	 * always kept in memory. Once the batch has been spilled, adding such a document beyond the pinned
+	 * limit throws a {@link BatchException}. Spilling builders must only be used to build one batch.
+	 * @param directory Directory for the temporary file ({@code null} for the default one).
+	 * @param threshold Memory threshold in bytes.
+	 * @param pinnedLimit Maximum estimated size in bytes of the additions kept in memory after
+	 *          spilling.
+	 */
+	public static <T> Builder<T> builder(@Nullable File directory, long threshold, long pinnedLimit) {
+		return new Builder<T>(directory, Math.max(0L, threshold), Math.max(0L, pinnedLimit));
 	}
 
 	public static class Builder<T> {
-		private final List<Addition> additions = Lists.newLinkedList();
-		private final ImmutableMultimap.Builder<String, String> deletions = ImmutableMultimap.builder();
+		private final ImmutableList.Builder<Addition> additions = ImmutableList.builder();
+		/** Deletion terms, grouped by field. */
+		private final Map<String, List<Term>> deletions = Maps.newLinkedHashMap();
+		private final ImmutableList.Builder<Query> queryDeletions = ImmutableList.builder();
+		/** Updates by term, the last one wins. */
+		private final Map<Term, Addition> updates = Maps.newLinkedHashMap();
 		/** Whether the index must be recreated before applying the batch. */
 		private boolean recreate = false;
+		/** Estimated size in bytes. */
+		private long bytes = 0L;
+		/** Spill directory. */
+		private final File directory;
+		/** Memory threshold (negative if spilling is disabled). */
+		private final long threshold;
+		/** Maximum estimated size in bytes of the additions pinned after spilling. */
+		private final long pinnedLimit;
+		/** Estimated size in bytes of the additions held in memory. */
+		private long memory = 0L;
+		/** Estimated size in bytes of the additions pinned after spilling. */
+		private long pinned = 0L;
+		/** Spilled additions. */
+		private BatchSpill spill = null;
+
+		private Builder(File directory, long threshold) {
+			this(directory, threshold, Long.MAX_VALUE);
+		}
 
-		private Builder() {
+		private Builder(File directory, long threshold, long pinnedLimit) {
+			this.directory = directory;
+			this.threshold = threshold;
+			this.pinnedLimit = pinnedLimit;
+		}
 
+		private void addition(final Document document, final Analyzer analyzer) {
+			final long size = estimate(document);
+			bytes += size;
+			try {
+				if (spill == null && threshold >= 0 && memory + size > threshold) {
+					spill = new BatchSpill(directory);
+				}
+				if (spill == null) {
+					additions.add(new Addition(document, analyzer));
+					memory += size;
+				} else if (BatchSpill.isSerializable(document)) {
+					spill.write(document, analyzer);
+				} else {
+					if (pinned + size > pinnedLimit) {
+						throw new BatchException("Additions that cannot be spilled exceed the pinned limit");
+					}
+					spill.pin(new Addition(document, analyzer));
+					memory += size;
+					pinned += size;
+				}
+			} catch (IOException e) {
+				throw new BatchException(e);
+			}
 		}
 
 		/**
@@ -115,7 +324,7 @@ public final class Batch<T, P> {
 		public Builder<T> add(final Document document) throws InterruptedException {
 			throwIfInterrupted();
 			if (document != null) {
-				additions.add(new Addition(document));
+				addition(document, null);
 			}
 			return this;
 		}
@@ -123,37 +332,82 @@ public final class Batch<T, P> {
 		public Builder<T> add(final Document document, final Analyzer analyzer) throws InterruptedException {
 			throwIfInterrupted();
 			if (document != null) {
-				additions.add(new Addition(document, analyzer));
+				addition(document, analyzer);
 			}
 			return this;
 		}
 
+		/** Adds a deletion term to the group of its field. */
+		private void deletion(final String field, final String text, @Nullable Term term) {
+			List<Term> terms = deletions.get(field);
+			if (terms == null) {
+				terms = Lists.newArrayList();
+				deletions.put(field, terms);
+			}
+			if (term == null) {
+				// Terms of the same field share the field name.
+				term = terms.isEmpty() ? new Term(field, text) : terms.get(0).createTerm(text);
+			}
+			terms.add(term);
+			bytes += estimate(field) + estimate(text);
+		}
+
 		public Builder<T> delete(final String field, final String text) throws InterruptedException {
 			throwIfInterrupted();
 			if (field != null && text != null) {
-				deletions.put(field, text);
+				deletion(field, text, null);
 			}
 			return this;
 		}
 
 		public Builder<T> delete(final Term term) throws InterruptedException {
-			if (term != null) {
-				return delete(term.field(), term.text());
+			throwIfInterrupted();
+			if (term != null && term.field() != null && term.text() != null) {
+				deletion(term.field(), term.text(), term);
 			}
 			return this;
 		}
 
-		public Builder<T> update(final Document document, final String field, final String text)
+		/** Deletes every document matching a query. */
+		public Builder<T> delete(final Query query) throws InterruptedException {
+			throwIfInterrupted();
+			if (query != null) {
+				queryDeletions.add(query);
+			}
+			return this;
+		}
+
+		/**
+		 * Replaces the documents containing a term with a new one. If the same term is updated several
+		 * times only the last update is kept. Updates are kept in memory even if the builder spills
+		 * additions. If the document is {@code null} the term is deleted.
+		 */
+		public Builder<T> update(final Document document, final Analyzer analyzer, final Term term)
 				throws InterruptedException {
-			if (field != null && text != null) {
-				return delete(field, text).add(document);
+			throwIfInterrupted();
+			if (term == null || term.field() == null || term.text() == null) {
+				return this;
+			}
+			if (document == null) {
+				return delete(term);
+			}
+			final Addition previous = updates.remove(term);
+			if (previous != null) {
+				bytes -= estimate(previous.getDocument()) + estimate(term.field()) + estimate(term.text());
 			}
+			updates.put(term, new Addition(document, analyzer, term));
+			bytes += estimate(document) + estimate(term.field()) + estimate(term.text());
 			return this;
 		}
 
 		public Builder<T> update(final Document document, final Term term) throws InterruptedException {
-			if (term != null) {
-				return update(document, term.field(), term.text());
+			return update(document, null, term);
+		}
+
+		public Builder<T> update(final Document document, final String field, final String text)
+				throws InterruptedException {
+			if (field != null && text != null) {
+				return update(document, null, new Term(field, text));
 			}
 			return this;
 		}
@@ -161,8 +415,19 @@ public final class Batch<T, P> {
 		public <P> Batch<T, P> build(final T checkpoint, P payload) throws InterruptedException {
 			throwIfInterrupted();
 			if (checkpoint == null) {
+				if (spill != null) {
+					spill.discard();
+				}
 				return null;
 			}
+			if (spill != null) {
+				try {
+					spill.finish();
+				} catch (IOException e) {
+					spill.discard();
+					throw new BatchException(e);
+				}
+			}
 			return new Batch<T, P>(checkpoint, payload, this);
 		}
 
@@ -172,17 +437,21 @@ public final class Batch<T, P> {
 
 	}
 
+	/** Addition or update of a document. */
 	public static final class Addition {
 		private final Document document;
 		private final Analyzer analyzer;
+		/** Term identifying the replaced documents, only for updates. */
+		private final Term term;
 
-		private Addition(final Document document, final Analyzer analyzer) {
-			this.document = document;
-			this.analyzer = analyzer;
+		Addition(final Document document, final Analyzer analyzer) {
+			this(document, analyzer, null);
 		}
 
-		private Addition(final Document document) {
-			this(document, null);
+		Addition(final Document document, final Analyzer analyzer, final Term term) {
+			this.document = document;
+			this.analyzer = analyzer;
+			this.term = term;
 		}
 
 		public Document getDocument() {
@@ -192,5 +461,11 @@ public final class Batch<T, P> {
 		public Analyzer getAnalyzer() {
 			return analyzer;
 		}
+
+		/** Returns the term identifying the replaced documents, {@code null} for plain additions. */
+		@Nullable
+		public Term getTerm() {
+			return term;
+		}
 	}
 }
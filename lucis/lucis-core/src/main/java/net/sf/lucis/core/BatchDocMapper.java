@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+
+import com.google.common.collect.Multimap;
+
+/**
+ * Mapper from the Lucene documents of a page of hits to custom objects, mapped at once.
+ * @author Andres Rodriguez
+ * @param <T> Type of the custom objects.
+ */
+public interface BatchDocMapper<T> {
+	/**
+	 * Maps a page of hits, in result order.
+	 * @param ids Document numbers.
+	 * @param score Maximum score of the query.
+	 * @param docs Documents.
+	 * @param fragments Not null multimaps of highlighter fragments.
+	 * @return The mapped objects, one per hit and in the same order.
+	 */
+	List<T> map(int[] ids, float score, List<Document> docs, List<Multimap<String, String>> fragments);
+}
@@ -22,6 +22,10 @@ public class BatchException extends RuntimeException {
 		super();
 	}
 
+	public BatchException(String message) {
+		super(message);
+	}
+
 	public BatchException(String message, Throwable cause) {
 		super(message, cause);
 	}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import net.sf.lucis.core.Batch.Addition;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.document.NumericField;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+
+/**
+ * Temporary file holding the additions of a batch that do not fit in memory. Documents are
+ * serialized in order, analyzers are kept in memory and referenced by index. Documents that cannot
+ * be serialized are kept in memory as well and referenced from the file to preserve the order.
+ * @author Andres Rodriguez
+ */
+final class BatchSpill {
+	/** Marker for additions without analyzer. */
+	private static final int NO_ANALYZER = -1;
+	/** Marker for additions kept in memory. */
+	private static final int PINNED = -2;
+
+	/** Temporary file. */
+	private final File file;
+	/** Output stream, {@code null} once finished. */
+	private ObjectOutputStream out;
+	/** Analyzer indexes. */
+	private final Map<Analyzer, Integer> indexes = Maps.newIdentityHashMap();
+	/** Analyzers. */
+	private final List<Analyzer> analyzers = Lists.newArrayList();
+	/** Additions kept in memory. */
+	private final List<Addition> pinned = Lists.newArrayList();
+	/** Number of additions. */
+	private int count = 0;
+	/** Open input streams. */
+	@GuardedBy("open")
+	private final Set<Closeable> open = Sets.newHashSet();
+	/** Whether the spill has been discarded. */
+	private volatile boolean discarded = false;
+
+	/**
+	 * Constructor.
+	 * @param directory Directory for the temporary file ({@code null} for the default one).
+	 */
+	BatchSpill(@Nullable File directory) throws IOException {
+		this.file = File.createTempFile("lucis-batch", ".tmp", directory);
+		boolean ok = false;
+		try {
+			this.out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			ok = true;
+		} finally {
+			if (!ok) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether a document can be spilled. Numeric fields are serializable: their token stream
+	 * is transient and rebuilt from the value.
+	 */
+	static boolean isSerializable(Document document) {
+		for (Fieldable field : document.getFields()) {
+			if (field instanceof NumericField) {
+				continue;
+			}
+			if (field.readerValue() != null || field.tokenStreamValue() != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Writes a document. */
+	void write(Document document, @Nullable Analyzer analyzer) throws IOException {
+		checkState(out != null, "Batch already built");
+		out.writeInt(index(analyzer));
+		out.writeObject(document);
+		// Avoid keeping references to the written objects.
+		out.reset();
+		count++;
+	}
+
+	/** Keeps an addition in memory, preserving its position. */
+	void pin(Addition addition) throws IOException {
+		checkState(out != null, "Batch already built");
+		out.writeInt(PINNED);
+		pinned.add(addition);
+		count++;
+	}
+
+	private int index(@Nullable Analyzer analyzer) {
+		if (analyzer == null) {
+			return NO_ANALYZER;
+		}
+		Integer index = indexes.get(analyzer);
+		if (index == null) {
+			index = analyzers.size();
+			analyzers.add(analyzer);
+			indexes.put(analyzer, index);
+		}
+		return index;
+	}
+
+	/** Finishes writing. */
+	void finish() throws IOException {
+		if (out != null) {
+			final ObjectOutputStream o = out;
+			out = null;
+			o.close();
+		}
+	}
+
+	/** Returns the number of additions. */
+	int size() {
+		return count;
+	}
+
+	/**
+	 * Returns an iterator over the additions.
+	 * @throws IllegalStateException if the spill has been discarded.
+	 * @throws BatchException if the file cannot be read.
+	 */
+	Iterator<Addition> iterator() {
+		checkState(!discarded, "Batch already discarded");
+		try {
+			return new Reader();
+		} catch (IOException e) {
+			throw new BatchException(e);
+		}
+	}
+
+	/** Deletes the temporary file. */
+	void discard() {
+		discarded = true;
+		try {
+			finish();
+		} catch (IOException e) {
+			// Nothing to do.
+		}
+		synchronized (open) {
+			for (Closeable c : open) {
+				try {
+					Closeables.close(c, true);
+				} catch (IOException e) {
+					// Swallowed.
+				}
+			}
+			open.clear();
+		}
+		file.delete();
+	}
+
+	/** Spill reader. */
+	private final class Reader extends AbstractIterator<Addition> {
+		private final ObjectInputStream in;
+		private int read = 0;
+		private int pinnedRead = 0;
+
+		Reader() throws IOException {
+			this.in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			synchronized (open) {
+				open.add(in);
+			}
+		}
+
+		private void close() {
+			synchronized (open) {
+				open.remove(in);
+			}
+			try {
+				Closeables.close(in, true);
+			} catch (IOException e) {
+				// Swallowed.
+			}
+		}
+
+		@Override
+		protected Addition computeNext() {
+			if (read >= count) {
+				close();
+				return endOfData();
+			}
+			boolean ok = false;
+			try {
+				read++;
+				final int index = in.readInt();
+				final Addition addition;
+				if (index == PINNED) {
+					addition = pinned.get(pinnedRead++);
+				} else {
+					final Document document = (Document) in.readObject();
+					addition = new Addition(document, index == NO_ANALYZER ? null : analyzers.get(index));
+				}
+				ok = true;
+				return addition;
+			} catch (IOException e) {
+				throw new BatchException(e);
+			} catch (ClassNotFoundException e) {
+				throw new BatchException(e);
+			} finally {
+				if (!ok) {
+					close();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Document adder for parallel full indexers. Documents may be added from several threads at the
+ * same time. The checkpoint may be set from any thread, the last value set wins.
+ * @author Andres Rodriguez
+ */
+@ThreadSafe
+public interface ConcurrentAdder extends Adder {
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+/**
+ * Optional interface for stores whose written changes become durable after the writer has
+ * returned, e.g. near-real-time stores.
+ * @author Andres Rodriguez
+ */
+public interface DeferredCommit {
+	/**
+	 * Runs a task once every change written so far has been committed, or immediately if there are
+	 * no uncommitted changes. If the changes are rolled back instead, the task is discarded.
+	 * @param task Task to run.
+	 */
+	void afterCommit(Runnable task);
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+/**
+ * Policy that computes the delay before the next execution of an indexing task. Policies may be
+ * stateful, in which case each instance must be used by a single indexing service.
+ * @author Andres Rodriguez
+ */
+public interface DelayPolicy {
+	/**
+	 * Returns the delay after a batch has been written.
+	 * @param operations Number of operations written.
+	 * @return The delay in milliseconds.
+	 */
+	long afterBatch(int operations);
+
+	/**
+	 * Returns the delay after an execution with nothing to do.
+	 * @return The delay in milliseconds.
+	 */
+	long afterIdle();
+
+	/**
+	 * Returns the delay after an error.
+	 * @return The delay in milliseconds.
+	 */
+	long afterError();
+}
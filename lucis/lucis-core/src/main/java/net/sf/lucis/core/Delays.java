@@ -15,7 +15,11 @@
  */
 package net.sf.lucis.core;
 
-public final class Delays {
+/**
+ * Constant delays for the normal, idle and error cases.
+ * @author Andres Rodriguez
+ */
+public final class Delays implements DelayPolicy {
 	private final long normal;
 	private final long idle;
 	private final long error;
@@ -49,4 +53,16 @@ public final class Delays {
 	public long getError() {
 		return error;
 	}
+
+	public long afterBatch(int operations) {
+		return normal;
+	}
+
+	public long afterIdle() {
+		return idle;
+	}
+
+	public long afterError() {
+		return error;
+	}
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.NRTCachingDirectory;
+
+/**
+ * Directory factories.
+ * @author Andres Rodriguez
+ */
+public final class DirectoryFactories {
+	/** Not instantiable. */
+	private DirectoryFactories() {
+		throw new AssertionError();
+	}
+
+	/** Lucene default: the implementation is chosen by {@link FSDirectory#open(File)}. */
+	private static final DirectoryFactory STANDARD = new DirectoryFactory() {
+		public Directory open(File path) throws IOException {
+			return FSDirectory.open(path);
+		}
+
+		@Override
+		public String toString() {
+			return "standard";
+		}
+	};
+
+	/** NIO-based directories. */
+	private static final DirectoryFactory NIO = new DirectoryFactory() {
+		public Directory open(File path) throws IOException {
+			return new NIOFSDirectory(path);
+		}
+
+		@Override
+		public String toString() {
+			return "nio";
+		}
+	};
+
+	/** Returns the default factory, that lets Lucene choose the implementation for the platform. */
+	public static DirectoryFactory standard() {
+		return STANDARD;
+	}
+
+	/** Returns a factory of NIO-based directories. */
+	public static DirectoryFactory nio() {
+		return NIO;
+	}
+
+	/**
+	 * Returns a factory of memory-mapped directories.
+	 * @param maxChunkSize Maximum size in bytes of each mapped chunk (if not positive, the Lucene
+	 *          default for the platform is used).
+	 * @param unmap Whether to unmap the files when closed, if supported by the JVM.
+	 */
+	public static DirectoryFactory mmap(final int maxChunkSize, final boolean unmap) {
+		return new DirectoryFactory() {
+			public Directory open(File path) throws IOException {
+				final MMapDirectory d = new MMapDirectory(path);
+				if (maxChunkSize > 0) {
+					d.setMaxChunkSize(maxChunkSize);
+				}
+				if (unmap && MMapDirectory.UNMAP_SUPPORTED) {
+					d.setUseUnmap(true);
+				}
+				return d;
+			}
+
+			@Override
+			public String toString() {
+				return String.format("mmap[%d,%s]", maxChunkSize, unmap);
+			}
+		};
+	}
+
+	/** Returns a factory of memory-mapped directories with the default chunk size and unmapping. */
+	public static DirectoryFactory mmap() {
+		return mmap(0, true);
+	}
+
+	/**
+	 * Returns a factory that wraps the directories of another one in a near-real-time caching
+	 * directory, which keeps small newly flushed segments in memory.
+	 * @param factory Factory of the wrapped directories.
+	 * @param maxMergeSizeMB Maximum size of the merged segments to cache.
+	 * @param maxCachedMB Maximum total size of the cached segments.
+	 */
+	public static DirectoryFactory nrtCaching(final DirectoryFactory factory, final double maxMergeSizeMB,
+			final double maxCachedMB) {
+		checkNotNull(factory, "The wrapped directory factory must be provided");
+		checkArgument(maxMergeSizeMB >= 0 && maxCachedMB >= 0, "The cache sizes must not be negative");
+		return new DirectoryFactory() {
+			public Directory open(File path) throws IOException {
+				return new NRTCachingDirectory(factory.open(path), maxMergeSizeMB, maxCachedMB);
+			}
+
+			@Override
+			public String toString() {
+				return String.format("nrtCaching[%s,%s,%s]", factory, maxMergeSizeMB, maxCachedMB);
+			}
+		};
+	}
+
+}
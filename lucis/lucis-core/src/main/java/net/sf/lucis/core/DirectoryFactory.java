@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.lucene.store.Directory;
+
+/**
+ * Factory for the directories of file system-based stores.
+ * @author Andres Rodriguez
+ * @see DirectoryFactories
+ */
+public interface DirectoryFactory {
+	/**
+	 * Opens a directory.
+	 * @param path Directory path, which must exist.
+	 */
+	Directory open(File path) throws IOException;
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+/**
+ * Optional extension of lucis searchers. Queries use these operations when the searcher provides
+ * them and fall back to the basic ones otherwise.
+ * @author Andres Rodriguez
+ */
+public interface ExtendedLucisSearcher extends LucisSearcher {
+	/**
+	 * Returns the top hits by relevance after the provided one.
+	 * @param after Last hit of the previous page.
+	 * @param query Query to perform.
+	 * @param filter Filter to apply (may be {@code null}).
+	 * @param n Maximum number of hits.
+	 */
+	TopDocs searchAfter(ScoreDoc after, Query query, Filter filter, int n);
+
+	/**
+	 * Returns a document loading only the fields accepted by a selector.
+	 * @param i Document number.
+	 * @param selector Field selector ({@code null} to load every field).
+	 * @return The requested document.
+	 */
+	Document doc(int i, FieldSelector selector);
+}
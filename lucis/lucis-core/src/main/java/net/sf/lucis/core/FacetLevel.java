@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Facet level configuration: the field to count and the buckets to return.
+ * @author Andres Rodriguez
+ */
+@Immutable
+public final class FacetLevel {
+	/** Field. */
+	private final String field;
+	/** Maximum number of buckets. */
+	private final int limit;
+	/** Minimum number of hits of a bucket. */
+	private final int minCount;
+
+	/**
+	 * Returns a facet level.
+	 * @param field Field to count. It must be indexed, untokenized and single-valued.
+	 * @param limit Maximum number of buckets, the ones with the most hits are returned.
+	 * @param minCount Minimum number of hits of a bucket.
+	 */
+	public static FacetLevel of(String field, int limit, int minCount) {
+		return new FacetLevel(field, limit, minCount);
+	}
+
+	/** Returns a facet level returning the top buckets with at least one hit. */
+	public static FacetLevel of(String field, int limit) {
+		return new FacetLevel(field, limit, 1);
+	}
+
+	/** Returns a facet level returning every bucket with at least one hit. */
+	public static FacetLevel all(String field) {
+		return new FacetLevel(field, Integer.MAX_VALUE, 1);
+	}
+
+	private FacetLevel(String field, int limit, int minCount) {
+		this.field = checkNotNull(field, "The field must be provided");
+		checkArgument(limit > 0, "The bucket limit must be > 0");
+		this.limit = limit;
+		this.minCount = Math.max(1, minCount);
+	}
+
+	public String getField() {
+		return field;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public int getMinCount() {
+		return minCount;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("field", field).add("limit", limit).add("minCount", minCount)
+				.toString();
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Group commit budget. Indexing services keep collecting batches until any of the limits is
+ * reached and then apply them with a single commit. Non-positive limits are ignored.
+ * @author Andres Rodriguez
+ */
+public final class GroupCommit {
+	/** Disabled group commit: every batch is committed. */
+	private static final GroupCommit DISABLED = new GroupCommit(1, 0L, 0L);
+
+	/** Maximum number of operations. */
+	private final int maxOperations;
+	/** Maximum estimated size in bytes. */
+	private final long maxBytes;
+	/** Maximum time in ms collecting batches. */
+	private final long maxTime;
+
+	private GroupCommit(int maxOperations, long maxBytes, long maxTime) {
+		this.maxOperations = maxOperations;
+		this.maxBytes = maxBytes;
+		this.maxTime = maxTime;
+	}
+
+	/** Returns a disabled group commit. */
+	public static GroupCommit disabled() {
+		return DISABLED;
+	}
+
+	/**
+	 * Returns a new group commit budget.
+	 * @param maxOperations Maximum number of operations (additions and deletions).
+	 * @param maxBytes Maximum estimated size in bytes.
+	 * @param maxTime Maximum time in ms collecting batches.
+	 * @throws IllegalArgumentException if every limit is non-positive.
+	 */
+	public static GroupCommit of(int maxOperations, long maxBytes, long maxTime) {
+		checkArgument(maxOperations > 0 || maxBytes > 0 || maxTime > 0, "At least one limit must be provided");
+		return new GroupCommit(maxOperations, maxBytes, maxTime);
+	}
+
+	public int getMaxOperations() {
+		return maxOperations;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public long getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Returns whether the budget has been reached.
+	 * @param operations Number of operations collected.
+	 * @param bytes Estimated size in bytes of the collected batches.
+	 * @param time Time in ms spent collecting batches.
+	 */
+	public boolean isReached(int operations, long bytes, long time) {
+		return this == DISABLED || (maxOperations > 0 && operations >= maxOperations)
+				|| (maxBytes > 0 && bytes >= maxBytes) || (maxTime > 0 && time >= maxTime);
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import java.util.List;
+
+/**
+ * Optional interface for writers able to apply several batches with a single commit. Indexer
+ * services write the batches one by one with writers that do not implement it.
+ * @author Andres Rodriguez.
+ */
+public interface GroupCommitWriter extends Writer {
+	/**
+	 * Applies a list of consecutive batches of operations with a single commit. The checkpoint of the
+	 * store is set only once, to the checkpoint of the last batch.
+	 * @param <T> Checkpoint type.
+	 * @param <P> Payload type.
+	 * @param store Destination store.
+	 * @param batches Batches to apply, in order.
+	 * @return The final index status or {@code null} if there are no batches or the final checkpoint
+	 *         is equals to the initial one.
+	 * @throws InterruptedException if the current task has been interrupted.
+	 */
+	<T, P> IndexStatus writeAll(Store<T> store, List<Batch<T, P>> batches) throws InterruptedException;
+}
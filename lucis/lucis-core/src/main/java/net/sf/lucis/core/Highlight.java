@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
@@ -37,6 +38,7 @@ import com.google.common.base.Predicate;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 
@@ -100,6 +102,12 @@ public abstract class Highlight {
 	 */
 	public abstract HighlightedQuery highlight(Query query);
 
+	/**
+	 * Returns the highlighted fields, which have to be loaded from the stored documents.
+	 * @return The highlighted fields.
+	 */
+	public abstract Set<String> getFields();
+
 	private static class No extends Highlight {
 		No() {
 		}
@@ -108,6 +116,11 @@ public abstract class Highlight {
 		public HighlightedQuery highlight(Query query) {
 			return UNHIGHLIGHTED;
 		}
+
+		@Override
+		public Set<String> getFields() {
+			return ImmutableSet.of();
+		}
 	}
 
 	private static class Some extends Highlight {
@@ -126,6 +139,11 @@ public abstract class Highlight {
 			return new HQuery(query);
 		}
 
+		@Override
+		public Set<String> getFields() {
+			return fields.keySet();
+		}
+
 		private final class HQuery extends HighlightedQuery {
 			/** Highlighter. */
 			private final Highlighter highlighter;
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+
+/**
+ * Document adder for incremental full indexers. If the destination index has been seeded with the
+ * current one, the indexer only needs to apply the differences.
+ * @author Andres Rodriguez
+ */
+public interface IncrementalAdder extends Adder {
+	/**
+	 * Returns whether the destination index contains a copy of the current one. If not, the
+	 * destination is empty and every document must be added.
+	 * @throws InterruptedException if the current task has been interrupted.
+	 */
+	boolean isIncremental() throws InterruptedException;
+
+	/**
+	 * Deletes the documents containing a term.
+	 * @param term Term to delete.
+	 * @throws IndexException if an error occurs.
+	 * @throws InterruptedException if the current task has been interrupted.
+	 */
+	void delete(Term term) throws InterruptedException;
+
+	/**
+	 * Deletes the documents matching a query.
+	 * @param query Query to delete.
+	 * @throws IndexException if an error occurs.
+	 * @throws InterruptedException if the current task has been interrupted.
+	 */
+	void delete(Query query) throws InterruptedException;
+
+	/**
+	 * Replaces the documents containing a term with a new one.
+	 * @param term Term identifying the documents to replace.
+	 * @param document New document.
+	 * @throws IndexException if an error occurs.
+	 * @throws InterruptedException if the current task has been interrupted.
+	 */
+	void update(Term term, Document document) throws InterruptedException;
+
+	/**
+	 * Replaces the documents containing a term with a new one.
+	 * @param term Term identifying the documents to replace.
+	 * @param document New document.
+	 * @param analyzer Analzer to use.
+	 * @throws IndexException if an error occurs.
+	 * @throws InterruptedException if the current task has been interrupted.
+	 */
+	void update(Term term, Document document, Analyzer analyzer) throws InterruptedException;
+}
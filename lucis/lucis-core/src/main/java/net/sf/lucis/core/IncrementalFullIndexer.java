@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+/**
+ * Inferface for full indexers able to apply only the differences to a copy of the current index.
+ * Writers supporting incremental reindexing call {@link #index(IncrementalAdder)}, seeding the
+ * destination if the store is an {@link IncrementalReindexingStore}. The rest of them call
+ * {@link #index(Adder)}.
+ * @author Andres Rodriguez
+ * @param <P> Payload type.
+ */
+public interface IncrementalFullIndexer<P> extends FullIndexer<P> {
+	/**
+	 * Create the index, which may already contain a copy of the current one (see
+	 * {@link IncrementalAdder#isIncremental()}).
+	 * @param adder Incremental index adder.
+	 * @throws IndexException if an error occurs.
+	 * @throws InterruptedException if the current task has been interrupted.
+	 */
+	P index(IncrementalAdder adder) throws InterruptedException;
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+/**
+ * Handler of the items mapped by an export query.
+ * @author Andres Rodriguez
+ * @param <T> Type of the items.
+ */
+public interface ItemHandler<T> {
+	/**
+	 * Handles an item.
+	 * @param item Mapped item.
+	 * @return Whether to keep handling items. Once it returns {@code false} no more documents are loaded.
+	 */
+	boolean handle(T item);
+}
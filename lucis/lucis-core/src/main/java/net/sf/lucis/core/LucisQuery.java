@@ -15,19 +15,35 @@
  */
 package net.sf.lucis.core;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+import net.sf.derquinse.lucis.Bucket;
+import net.sf.derquinse.lucis.FacetResult;
 import net.sf.derquinse.lucis.Group;
 import net.sf.derquinse.lucis.GroupResult;
 import net.sf.derquinse.lucis.Item;
 import net.sf.derquinse.lucis.Page;
 import net.sf.derquinse.lucis.Result;
+import net.sf.derquinse.lucis.SearchException;
 import net.sf.lucis.core.Highlight.HighlightedQuery;
 import net.sf.lucis.core.support.AllCollector;
 import net.sf.lucis.core.support.CountingCollector;
+import net.sf.lucis.core.support.ExportCollector;
+import net.sf.lucis.core.support.FacetCollector;
+import net.sf.lucis.core.support.GroupingCollector;
+import net.sf.lucis.core.support.SearchAfterCollector;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
@@ -37,7 +53,9 @@ import org.apache.lucene.util.OpenBitSet;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
 
 /**
  * Abstract implementation for a search service.
@@ -59,8 +77,111 @@ public abstract class LucisQuery<T> {
 
 	public abstract T perform(LucisSearcher searcher);
 
+	/**
+	 * Loads a range of hits. Documents are loaded in increasing document number order, so that the
+	 * stored fields of each segment are read sequentially, and returned in result order.
+	 * @param searcher Searcher to use.
+	 * @param hits Hits.
+	 * @param from First hit to load (inclusive).
+	 * @param to Last hit to load (exclusive).
+	 * @param selector Stored fields selector ({@code null} to load every field).
+	 */
+	static List<Document> load(LucisSearcher searcher, ScoreDoc[] hits, int from, int to, FieldSelector selector) {
+		final int n = to - from;
+		// Document number in the high bits, result position in the low ones.
+		final long[] order = new long[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = ((long) hits[from + i].doc << 32) | i;
+		}
+		Arrays.sort(order);
+		final Document[] docs = new Document[n];
+		for (long o : order) {
+			docs[(int) o] = doc(searcher, (int) (o >>> 32), selector);
+		}
+		return Arrays.asList(docs);
+	}
+
+	/**
+	 * Loads a document, reading only the selected fields if the searcher supports it.
+	 * @param searcher Searcher to use.
+	 * @param i Document number.
+	 * @param selector Stored fields selector ({@code null} to load every field).
+	 */
+	static Document doc(LucisSearcher searcher, int i, FieldSelector selector) {
+		if (selector != null && searcher instanceof ExtendedLucisSearcher) {
+			return ((ExtendedLucisSearcher) searcher).doc(i, selector);
+		}
+		return searcher.doc(i);
+	}
+
+	/**
+	 * Loads and maps a range of hits.
+	 * @param searcher Searcher to use.
+	 * @param hits Hits.
+	 * @param from First hit to map (inclusive).
+	 * @param to Last hit to map (exclusive).
+	 * @param score Score passed to the mapper.
+	 * @param mapper Document mapper.
+	 * @param selector Stored fields selector ({@code null} to load every field).
+	 * @param highlighted Highlighted query.
+	 */
+	static <T> List<T> map(LucisSearcher searcher, ScoreDoc[] hits, int from, int to, float score,
+			BatchDocMapper<T> mapper, FieldSelector selector, HighlightedQuery highlighted) {
+		final List<Document> docs = load(searcher, hits, from, to, selector);
+		final int[] ids = new int[docs.size()];
+		final List<Multimap<String, String>> fragments = Lists.newArrayListWithCapacity(docs.size());
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = hits[from + i].doc;
+			fragments.add(highlighted.getFragments(docs.get(i)));
+		}
+		final List<T> items = mapper.map(ids, score, docs, fragments);
+		checkState(items != null && items.size() == ids.length, "The batch mapper must return an item per hit");
+		return items;
+	}
+
+	/** Adapts a document mapper to map pages of hits. */
+	static <T> BatchDocMapper<T> batch(final DocMapper<T> mapper) {
+		checkNotNull(mapper, "The document mapper must be provided");
+		return new BatchDocMapper<T>() {
+			public List<T> map(int[] ids, float score, List<Document> docs, List<Multimap<String, String>> fragments) {
+				final List<T> items = Lists.newArrayListWithCapacity(ids.length);
+				for (int i = 0; i < ids.length; i++) {
+					items.add(mapper.map(ids[i], score, docs.get(i), fragments.get(i)));
+				}
+				return items;
+			}
+		};
+	}
+
+	/**
+	 * Returns the selector for the stored fields needed by a query.
+	 * @param fields Fields required by the mapper ({@code null} to load every field).
+	 * @param highlight Highlight configuration, whose fields are added to the selection.
+	 * @return The field selector or {@code null} if every field has to be loaded.
+	 */
+	static FieldSelector selector(Set<String> fields, Highlight highlight) {
+		if (fields == null) {
+			return null;
+		}
+		final Set<String> selected = ImmutableSet.<String> builder().addAll(fields).addAll(highlight.getFields())
+				.build();
+		return new MapFieldSelector(Lists.newArrayList(selected));
+	}
+
+	/**
+	 * Returns the first hit of a query.
+	 * @param query Query to perform.
+	 * @param filter Filter to apply (may be {@code null}).
+	 * @param sort Sort to apply (may be {@code null}).
+	 * @param mapper Document mapper.
+	 * @param highlight Highlight configuration (may be {@code null}).
+	 * @param fields Stored fields required by the mapper ({@code null} to load every field). The
+	 *          highlighted fields are loaded as well.
+	 */
 	public static <T> LucisQuery<Item<T>> first(final Query query, final Filter filter, final Sort sort,
-			final DocMapper<T> mapper, final Highlight highlight) {
+			final DocMapper<T> mapper, final Highlight highlight, final Set<String> fields) {
+		final Highlight h = MoreObjects.firstNonNull(highlight, Highlight.no());
+		final FieldSelector selector = selector(fields, h);
 		return new LucisQuery<Item<T>>() {
 			public Item<T> perform(final LucisSearcher searcher) {
 				Stopwatch w = Stopwatch.createStarted();
@@ -68,8 +189,8 @@ public abstract class LucisQuery<T> {
 				TopDocs docs = getTopDocs(searcher, query, filter, sort, 1);
 				if (docs.totalHits > 0) {
 					ScoreDoc sd = docs.scoreDocs[0];
-					Document doc = searcher.doc(sd.doc);
-					HighlightedQuery highlighted = MoreObjects.firstNonNull(highlight, Highlight.no()).highlight(rewritten);
+					Document doc = doc(searcher, sd.doc, selector);
+					HighlightedQuery highlighted = h.highlight(rewritten);
 					float score = sd.score;
 					T item = mapper.map(sd.doc, score, doc, highlighted.getFragments(doc));
 					return new Item<T>(docs.totalHits, score, w.elapsed(TimeUnit.MILLISECONDS), item);
@@ -80,6 +201,11 @@ public abstract class LucisQuery<T> {
 		};
 	}
 
+	public static <T> LucisQuery<Item<T>> first(final Query query, final Filter filter, final Sort sort,
+			final DocMapper<T> mapper, final Highlight highlight) {
+		return first(query, filter, sort, mapper, highlight, null);
+	}
+
 	public static <T> LucisQuery<Item<T>> first(final Query query, final Filter filter, final Sort sort,
 			final DocMapper<T> mapper) {
 		return first(query, filter, sort, mapper, Highlight.no());
@@ -97,8 +223,31 @@ public abstract class LucisQuery<T> {
 		return first(query, null, null, mapper, Highlight.no());
 	}
 
+	/**
+	 * Returns a page of hits of a query.
+	 * @param query Query to perform.
+	 * @param filter Filter to apply (may be {@code null}).
+	 * @param sort Sort to apply (may be {@code null}).
+	 * @param mapper Document mapper.
+	 * @param first First hit to return (0-indexed).
+	 * @param pageSize Maximum number of hits to return.
+	 * @param highlight Highlight configuration (may be {@code null}).
+	 * @param fields Stored fields required by the mapper ({@code null} to load every field). The
+	 *          highlighted fields are loaded as well.
+	 */
 	public static <T> LucisQuery<Page<T>> page(final Query query, final Filter filter, final Sort sort,
-			final DocMapper<T> mapper, final int first, final int pageSize, final Highlight highlight) {
+			final DocMapper<T> mapper, final int first, final int pageSize, final Highlight highlight,
+			final Set<String> fields) {
+		return page(query, filter, sort, batch(mapper), first, pageSize, highlight, fields);
+	}
+
+	/** Returns a page of hits of a query, mapping the documents at once. */
+	public static <T> LucisQuery<Page<T>> page(final Query query, final Filter filter, final Sort sort,
+			final BatchDocMapper<T> mapper, final int first, final int pageSize, final Highlight highlight,
+			final Set<String> fields) {
+		checkNotNull(mapper, "The document mapper must be provided");
+		final Highlight h = MoreObjects.firstNonNull(highlight, Highlight.no());
+		final FieldSelector selector = selector(fields, h);
 		return new LucisQuery<Page<T>>() {
 			public Page<T> perform(LucisSearcher searcher) {
 				Stopwatch w = Stopwatch.createStarted();
@@ -109,14 +258,8 @@ public abstract class LucisQuery<T> {
 					int n = Math.min(total, docs.scoreDocs.length);
 					float score = docs.getMaxScore();
 					if (n > first) {
-						final List<T> items = Lists.newArrayListWithCapacity(n - first);
-						HighlightedQuery highlighted = MoreObjects.firstNonNull(highlight, Highlight.no()).highlight(rewritten);
-						for (int i = first; i < n; i++) {
-							ScoreDoc sd = docs.scoreDocs[i];
-							Document doc = searcher.doc(sd.doc);
-							T item = mapper.map(sd.doc, score, doc, highlighted.getFragments(doc));
-							items.add(item);
-						}
+						HighlightedQuery highlighted = h.highlight(rewritten);
+						final List<T> items = map(searcher, docs.scoreDocs, first, n, score, mapper, selector, highlighted);
 						return new Page<T>(docs.totalHits, score, w.elapsed(TimeUnit.MILLISECONDS), first, items);
 					} else {
 						return new Page<T>(docs.totalHits, score, w.elapsed(TimeUnit.MILLISECONDS), first, null);
@@ -128,6 +271,11 @@ public abstract class LucisQuery<T> {
 		};
 	}
 
+	public static <T> LucisQuery<Page<T>> page(final Query query, final Filter filter, final Sort sort,
+			final DocMapper<T> mapper, final int first, final int pageSize, final Highlight highlight) {
+		return page(query, filter, sort, mapper, first, pageSize, highlight, null);
+	}
+
 	public static <T> LucisQuery<Page<T>> page(final Query query, final Filter filter, final Sort sort,
 			final DocMapper<T> mapper, final int first, final int pageSize) {
 		return page(query, filter, sort, mapper, first, pageSize, Highlight.no());
@@ -148,6 +296,131 @@ public abstract class LucisQuery<T> {
 		return page(query, null, null, mapper, first, pageSize, Highlight.no());
 	}
 
+	/**
+	 * Returns the page of hits of a query following the one that returned a cursor. The cost does not
+	 * depend on the depth of the page, as only the hits after the last returned one are collected.
+	 * Queries sorted by relevance are paged by offset if the searcher is not an
+	 * {@link ExtendedLucisSearcher}, and sorted queries if their sort values cannot be encoded in the
+	 * cursor.
+	 * @param query Query to perform.
+	 * @param filter Filter to apply (may be {@code null}).
+	 * @param sort Sort to apply (may be {@code null}).
+	 * @param mapper Document mapper.
+	 * @param cursor Cursor returned with the previous page ({@code null} for the first page).
+	 * @param pageSize Maximum number of hits to return.
+	 * @param highlight Highlight configuration (may be {@code null}).
+	 * @param fields Stored fields required by the mapper ({@code null} to load every field). The
+	 *          highlighted fields are loaded as well.
+	 * @throws IllegalArgumentException if the cursor is not valid.
+	 */
+	public static <T> LucisQuery<Page<T>> pageAfter(final Query query, final Filter filter, final Sort sort,
+			final DocMapper<T> mapper, final String cursor, final int pageSize, final Highlight highlight,
+			final Set<String> fields) {
+		return pageAfter(query, filter, sort, batch(mapper), cursor, pageSize, highlight, fields);
+	}
+
+	/**
+	 * Returns the page of hits of a query following the one that returned a cursor, mapping the
+	 * documents at once.
+	 */
+	public static <T> LucisQuery<Page<T>> pageAfter(final Query query, final Filter filter, final Sort sort,
+			final BatchDocMapper<T> mapper, final String cursor, final int pageSize, final Highlight highlight,
+			final Set<String> fields) {
+		checkNotNull(mapper, "The document mapper must be provided");
+		final PageCursor c = PageCursor.parse(cursor, sort);
+		final Highlight h = MoreObjects.firstNonNull(highlight, Highlight.no());
+		final FieldSelector selector = selector(fields, h);
+		return new LucisQuery<Page<T>>() {
+			public Page<T> perform(LucisSearcher searcher) {
+				Stopwatch w = Stopwatch.createStarted();
+				final int offset = c.getOffset();
+				Query rewritten = searcher.rewrite(query);
+				final TopDocs docs;
+				final int from;
+				if (sort != null && c.getAfter() != null) {
+					docs = searchAfter(searcher, (FieldDoc) c.getAfter(), rewritten, filter, pageSize, sort);
+					from = 0;
+				} else if (sort != null) {
+					docs = searcher.search(rewritten, filter, offset + pageSize, sort);
+					from = offset;
+				} else if (c.getAfter() != null && searcher instanceof ExtendedLucisSearcher) {
+					final ExtendedLucisSearcher extended = (ExtendedLucisSearcher) searcher;
+					docs = extended.searchAfter(c.getAfter(), rewritten, filter, pageSize);
+					from = 0;
+				} else {
+					docs = searcher.search(rewritten, filter, offset + pageSize);
+					from = offset;
+				}
+				final int n = docs.scoreDocs.length;
+				if (docs.totalHits == 0 || n <= from) {
+					return new Page<T>(docs.totalHits, 0.0f, w.elapsed(TimeUnit.MILLISECONDS), offset, null);
+				}
+				float score = docs.getMaxScore();
+				HighlightedQuery highlighted = h.highlight(rewritten);
+				final List<T> items = map(searcher, docs.scoreDocs, from, n, score, mapper, selector, highlighted);
+				final int next = offset + items.size();
+				String nextCursor = null;
+				if (next < docs.totalHits) {
+					nextCursor = PageCursor.next(next, docs.scoreDocs[n - 1], sort).toString();
+				}
+				return new Page<T>(docs.totalHits, score, w.elapsed(TimeUnit.MILLISECONDS), offset, items, nextCursor);
+			}
+		};
+	}
+
+	/** Returns the top hits of a sorted query after the provided one. */
+	private static TopDocs searchAfter(LucisSearcher searcher, FieldDoc after, Query query, Filter filter,
+			int pageSize, Sort sort) {
+		try {
+			final SearchAfterCollector collector = new SearchAfterCollector(sort, after, pageSize);
+			searcher.search(query, filter, collector);
+			return collector.topDocs();
+		} catch (IOException e) {
+			throw new SearchException(e);
+		}
+	}
+
+	public static <T> LucisQuery<Page<T>> pageAfter(final Query query, final Filter filter, final Sort sort,
+			final DocMapper<T> mapper, final String cursor, final int pageSize) {
+		return pageAfter(query, filter, sort, mapper, cursor, pageSize, Highlight.no(), null);
+	}
+
+	public static <T> LucisQuery<Page<T>> pageAfter(final Query query, final DocMapper<T> mapper, final String cursor,
+			final int pageSize) {
+		return pageAfter(query, null, null, mapper, cursor, pageSize, Highlight.no(), null);
+	}
+
+	/**
+	 * Maps every hit of a query and passes the items to a handler, without materializing the result
+	 * set. Hits are visited in index order, reading the stored fields of each segment sequentially, and
+	 * mapped without highlighting.
+	 * @param query Query to perform.
+	 * @param filter Filter to apply (may be {@code null}).
+	 * @param mapper Document mapper.
+	 * @param fields Stored fields required by the mapper ({@code null} to load every field).
+	 * @param handler Item handler. If it asks to stop the remaining hits are counted but not loaded.
+	 * @return A query returning the number of hits.
+	 */
+	public static <T> LucisQuery<Result> export(final Query query, final Filter filter, final DocMapper<T> mapper,
+			final Set<String> fields, final ItemHandler<T> handler) {
+		final FieldSelector selector = selector(fields, Highlight.no());
+		return new LucisQuery<Result>() {
+			@Override
+			public Result perform(LucisSearcher searcher) {
+				final long t0 = System.currentTimeMillis();
+				final ExportCollector<T> collector = new ExportCollector<T>(mapper, handler, selector);
+				searcher.search(query, filter, collector);
+				final long t1 = System.currentTimeMillis();
+				return new Result(collector.getCount(), collector.getMaxScore(), t1 - t0);
+			}
+		};
+	}
+
+	public static <T> LucisQuery<Result> export(final Query query, final Filter filter, final DocMapper<T> mapper,
+			final ItemHandler<T> handler) {
+		return export(query, filter, mapper, null, handler);
+	}
+
 	public static LucisQuery<Result> count(final Query query, final Filter filter) {
 		return new LucisQuery<Result>() {
 			@Override
@@ -198,4 +471,59 @@ public abstract class LucisQuery<T> {
 			}
 		};
 	}
+
+	/**
+	 * Groups the hits of a query by the indexed values of a list of fields, read from the field cache
+	 * instead of the stored documents. The fields must be indexed, untokenized and single-valued.
+	 * @param query Query to perform.
+	 * @param filter Filter to apply (may be {@code null}).
+	 * @param fields Fields to group by. A {@code null} field ends the list.
+	 */
+	public static LucisQuery<GroupResult> indexedGroup(final Query query, final Filter filter,
+			final List<String> fields) {
+		return new LucisQuery<GroupResult>() {
+			@Override
+			public GroupResult perform(LucisSearcher searcher) {
+				final long t0 = System.currentTimeMillis();
+				final GroupingCollector collector = new GroupingCollector(fields);
+				searcher.search(query, filter, collector);
+				final Group g;
+				try {
+					g = collector.getGroup();
+				} catch (IOException e) {
+					throw new SearchException(e);
+				}
+				final long t1 = System.currentTimeMillis();
+				return new GroupResult(g, collector.getMaxScore(), t1 - t0);
+			}
+		};
+	}
+
+	/**
+	 * Computes multi-level facets over the indexed values of a list of fields. Each level returns
+	 * at most its limit of buckets, sorted by decreasing number of hits, and the next level is computed
+	 * for every returned bucket.
+	 * @param query Query to perform.
+	 * @param filter Filter to apply (may be {@code null}).
+	 * @param levels Facet levels.
+	 */
+	public static LucisQuery<FacetResult> facets(final Query query, final Filter filter,
+			final List<FacetLevel> levels) {
+		return new LucisQuery<FacetResult>() {
+			@Override
+			public FacetResult perform(LucisSearcher searcher) {
+				final long t0 = System.currentTimeMillis();
+				final FacetCollector collector = new FacetCollector(levels);
+				searcher.search(query, filter, collector);
+				final List<Bucket> buckets;
+				try {
+					buckets = collector.getBuckets();
+				} catch (IOException e) {
+					throw new SearchException(e);
+				}
+				final long t1 = System.currentTimeMillis();
+				return new FacetResult(collector.getCount(), collector.getMaxScore(), t1 - t0, buckets);
+			}
+		};
+	}
 }
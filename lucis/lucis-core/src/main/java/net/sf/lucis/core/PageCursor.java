@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
+
+/**
+ * Cursor of a paged query. It holds the number of hits already returned and the last returned hit.
+ * For sorted queries the hit includes the values of the sort fields, so that the next page can be
+ * collected without the previous ones. Sorts with values that cannot be encoded are paged by
+ * offset. Document numbers are only meaningful for the reader that returned them: if the index
+ * changes between pages, hits may be skipped or repeated.
+ * @author Andres Rodriguez
+ */
+@Immutable
+final class PageCursor {
+	/** Cursor of the first page. */
+	static final PageCursor FIRST = new PageCursor(0, null);
+	/** Separator. */
+	private static final char SEPARATOR = ':';
+	/** Splitter. */
+	private static final Splitter SPLITTER = Splitter.on(SEPARATOR);
+	/** Encoding of string values. */
+	private static final String ENCODING = "UTF-8";
+
+	/** Number of hits already returned. */
+	private final int offset;
+	/** Last returned hit. */
+	private final ScoreDoc after;
+
+	/**
+	 * Parses a cursor.
+	 * @param cursor Cursor to parse ({@code null} for the first page).
+	 * @param sort Sort of the query ({@code null} for relevance order).
+	 * @throws IllegalArgumentException if the cursor is not valid for the sort.
+	 */
+	static PageCursor parse(@Nullable String cursor, @Nullable Sort sort) {
+		if (cursor == null) {
+			return FIRST;
+		}
+		final String[] parts = Iterables.toArray(SPLITTER.split(cursor), String.class);
+		final int fields = sort != null ? sort.getSort().length : 0;
+		try {
+			final int offset = Integer.parseInt(parts[0]);
+			if (parts.length == 1) {
+				// Pages sorted by relevance are always collected after a hit.
+				if (offset == 0 || sort != null) {
+					return new PageCursor(offset, null);
+				}
+			} else if (parts.length == 3 && sort == null) {
+				final ScoreDoc after = new ScoreDoc(Integer.parseInt(parts[1]), decodeFloat(parts[2]));
+				return new PageCursor(offset, after);
+			} else if (parts.length == 3 + fields && sort != null) {
+				final Object[] values = new Object[fields];
+				for (int i = 0; i < fields; i++) {
+					values[i] = decode(parts[3 + i]);
+				}
+				final FieldDoc after = new FieldDoc(Integer.parseInt(parts[1]), decodeFloat(parts[2]), values);
+				return new PageCursor(offset, after);
+			}
+		} catch (RuntimeException e) {
+			// Reported below.
+		}
+		throw new IllegalArgumentException(String.format("Invalid page cursor [%s]", cursor));
+	}
+
+	/**
+	 * Returns the cursor of the next page.
+	 * @param offset Number of hits already returned.
+	 * @param last Last returned hit. For sorted queries, if it has no sort values or some of them
+	 *          cannot be encoded the next page is collected by offset.
+	 * @param sort Sort of the query ({@code null} for relevance order).
+	 */
+	static PageCursor next(int offset, ScoreDoc last, @Nullable Sort sort) {
+		if (sort != null) {
+			if (!(last instanceof FieldDoc)) {
+				return new PageCursor(offset, null);
+			}
+			final Object[] values = ((FieldDoc) last).fields;
+			if (values == null || values.length != sort.getSort().length) {
+				return new PageCursor(offset, null);
+			}
+			for (Object value : values) {
+				if (value != null && code(value) == 0) {
+					return new PageCursor(offset, null);
+				}
+			}
+		}
+		return new PageCursor(offset, last);
+	}
+
+	/**
+	 * Constructor.
+	 * @param offset Number of hits already returned.
+	 * @param after Last returned hit, if any.
+	 */
+	PageCursor(int offset, @Nullable ScoreDoc after) {
+		checkArgument(offset >= 0, "The offset must be >= 0");
+		this.offset = offset;
+		this.after = after;
+	}
+
+	int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Returns the last returned hit, {@code null} for the first page or for sorted queries paged by
+	 * offset. For sorted queries it is a {@link FieldDoc}.
+	 */
+	ScoreDoc getAfter() {
+		return after;
+	}
+
+	/** Returns the type code of a sort value, 0 if it cannot be encoded. */
+	private static char code(Object value) {
+		if (value instanceof String) {
+			return 's';
+		} else if (value instanceof Integer) {
+			return 'i';
+		} else if (value instanceof Long) {
+			return 'l';
+		} else if (value instanceof Float) {
+			return 'f';
+		} else if (value instanceof Double) {
+			return 'd';
+		} else if (value instanceof Short) {
+			return 'h';
+		} else if (value instanceof Byte) {
+			return 'b';
+		}
+		return 0;
+	}
+
+	/** Encodes a sort value. */
+	private static String encode(@Nullable Object value) {
+		if (value == null) {
+			return "n";
+		}
+		final char code = code(value);
+		final String text;
+		switch (code) {
+		case 's':
+			try {
+				text = URLEncoder.encode((String) value, ENCODING);
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
+			}
+			break;
+		case 'f':
+			text = encodeFloat((Float) value);
+			break;
+		case 'd':
+			text = Long.toHexString(Double.doubleToLongBits((Double) value));
+			break;
+		default:
+			text = value.toString();
+		}
+		return code + text;
+	}
+
+	/** Decodes a sort value. */
+	private static Object decode(String text) {
+		checkArgument(text.length() > 0);
+		final String value = text.substring(1);
+		switch (text.charAt(0)) {
+		case 'n':
+			checkArgument(value.length() == 0);
+			return null;
+		case 's':
+			try {
+				return URLDecoder.decode(value, ENCODING);
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
+			}
+		case 'i':
+			return Integer.valueOf(value);
+		case 'l':
+			return Long.valueOf(value);
+		case 'f':
+			return decodeFloat(value);
+		case 'd':
+			return Double.longBitsToDouble(new BigInteger(value, 16).longValue());
+		case 'h':
+			return Short.valueOf(value);
+		case 'b':
+			return Byte.valueOf(value);
+		default:
+			throw new IllegalArgumentException();
+		}
+	}
+
+	private static String encodeFloat(float value) {
+		return Integer.toHexString(Float.floatToIntBits(value));
+	}
+
+	private static float decodeFloat(String value) {
+		return Float.intBitsToFloat((int) Long.parseLong(value, 16));
+	}
+
+	@Override
+	public String toString() {
+		if (after == null) {
+			return Integer.toString(offset);
+		}
+		final StringBuilder b = new StringBuilder();
+		b.append(offset).append(SEPARATOR).append(after.doc).append(SEPARATOR).append(encodeFloat(after.score));
+		if (after instanceof FieldDoc && ((FieldDoc) after).fields != null) {
+			for (Object value : ((FieldDoc) after).fields) {
+				b.append(SEPARATOR).append(encode(value));
+			}
+		}
+		return b.toString();
+	}
+}
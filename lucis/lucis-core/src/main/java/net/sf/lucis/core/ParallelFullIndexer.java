@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+/**
+ * Inferface for full indexers that add documents from several threads. Writers supporting
+ * concurrent additions call {@link #index(ConcurrentAdder)}, the rest of them call
+ * {@link #index(Adder)}. In both cases the index is committed once, after the method returns.
+ * @author Andres Rodriguez
+ * @param <P> Payload type.
+ */
+public interface ParallelFullIndexer<P> extends FullIndexer<P> {
+	/**
+	 * Create the index. Every thread used to add documents must have finished before returning.
+	 * @param adder Thread-safe index adder.
+	 * @throws IndexException if an error occurs.
+	 * @throws InterruptedException if the current task has been interrupted.
+	 */
+	P index(ConcurrentAdder adder) throws InterruptedException;
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import org.apache.lucene.index.IndexReader;
+
+/**
+ * Listener notified when a store publishes a new managed reader.
+ * @author Andres Rodriguez
+ */
+public interface RefreshListener {
+	/**
+	 * Called after a new reader has been published. Called from the refreshing thread, so it should
+	 * return quickly. Exceptions are logged and ignored.
+	 * @param provider Store that published the reader.
+	 * @param reader New reader. A reference must be acquired in order to use it after returning.
+	 */
+	void refreshed(DirectoryProvider provider, IndexReader reader);
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+/**
+ * Optional interface for stores and writers that have to take part in the lifecycle of the indexer
+ * services using them, e.g. to commit pending changes or release resources.
+ * @author Andres Rodriguez
+ */
+public interface ServiceHook {
+	/**
+	 * Called when a task of a service has found nothing to write.
+	 * @param store Store of the service.
+	 */
+	void idle(DirectoryProvider store);
+
+	/**
+	 * Called when a service has been stopped, once its last task has finished.
+	 * @param store Store of the service.
+	 */
+	void stopped(DirectoryProvider store);
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+/**
+ * Warms up a new index reader before it is published to the searchers, e.g. by loading the field
+ * cache entries used for sorting or the doc id sets of cached filters. Warmers must be thread safe.
+ * @author Andres Rodriguez
+ * @see Warmers
+ */
+public interface Warmer {
+	/**
+	 * Warms up a reader. Exceptions are logged and ignored.
+	 * @param searcher Searcher over the new reader. It must not be closed by the warmer.
+	 */
+	void warm(LucisSearcher searcher);
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Warmer factories.
+ * @author Andres Rodriguez
+ */
+public final class Warmers {
+	/** Not instantiable. */
+	private Warmers() {
+		throw new AssertionError();
+	}
+
+	/** Returns a warmer that performs a list of queries. */
+	public static Warmer queries(Iterable<? extends LucisQuery<?>> queries) {
+		final ImmutableList<LucisQuery<?>> list = ImmutableList.<LucisQuery<?>> copyOf(queries);
+		return new Warmer() {
+			public void warm(LucisSearcher searcher) {
+				for (LucisQuery<?> query : list) {
+					query.perform(searcher);
+				}
+			}
+		};
+	}
+
+	/** Returns a warmer that loads the field cache entries used by a list of sorts. */
+	public static Warmer sorts(Iterable<Sort> sorts) {
+		final ImmutableList<Sort> list = ImmutableList.copyOf(sorts);
+		return new Warmer() {
+			public void warm(LucisSearcher searcher) {
+				final Query all = new MatchAllDocsQuery();
+				for (Sort sort : list) {
+					searcher.search(all, null, 1, sort);
+				}
+			}
+		};
+	}
+
+	/** Returns a warmer that computes the doc id sets of a list of (usually cached) filters. */
+	public static Warmer filters(Iterable<? extends Filter> filters) {
+		final ImmutableList<Filter> list = ImmutableList.<Filter> copyOf(filters);
+		return new Warmer() {
+			public void warm(LucisSearcher searcher) {
+				final Query all = new MatchAllDocsQuery();
+				for (Filter filter : list) {
+					searcher.search(all, filter, 1);
+				}
+			}
+		};
+	}
+
+	/** Returns a warmer that runs a list of warmers in order. */
+	public static Warmer compose(Iterable<? extends Warmer> warmers) {
+		final ImmutableList<Warmer> list = ImmutableList.<Warmer> copyOf(warmers);
+		return new Warmer() {
+			public void warm(LucisSearcher searcher) {
+				for (Warmer warmer : list) {
+					warmer.warm(searcher);
+				}
+			}
+		};
+	}
+
+	/** Returns a warmer that runs some warmers in order. */
+	public static Warmer compose(Warmer... warmers) {
+		return compose(ImmutableList.copyOf(checkNotNull(warmers)));
+	}
+
+}
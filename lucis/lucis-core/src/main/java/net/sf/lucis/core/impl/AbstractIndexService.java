@@ -15,17 +15,21 @@
  */
 package net.sf.lucis.core.impl;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.annotation.Nullable;
 
 import net.derquinse.common.log.ContextLog;
 import net.sf.derquinsej.concurrent.ActiveObjectStatus;
 import net.sf.derquinsej.concurrent.ActiveObjectSupport;
+import net.sf.lucis.core.DelayPolicy;
 import net.sf.lucis.core.IndexStatus;
 import net.sf.lucis.core.Loggers;
 
@@ -44,23 +48,44 @@ public abstract class AbstractIndexService extends AbstractNamed {
 	private final ActiveObjectSupport support;
 	/** Whether the service is pasive. */
 	private final boolean pasive;
+	/** Delay policy. */
+	private volatile DelayPolicy delays;
+	/** Shared scheduler. */
+	private volatile IndexingScheduler scheduler = null;
+	/** Task priority in the shared scheduler. */
+	private volatile int priority = IndexingScheduler.INCREMENTAL_PRIORITY;
+	/** Current execution token, {@code null} if the service is not running. */
+	private volatile Object token = null;
+	/** Lock held while a task is running. */
+	private final Lock running = new ReentrantLock();
 
 	/**
 	 * Constructor.
 	 * @param externalExecutor External executor.
 	 * @param pasive Whether the service is pasive.
+	 * @param delays Default delay policy.
 	 */
-	AbstractIndexService(@Nullable ScheduledExecutorService externalExecutor, boolean pasive) {
+	AbstractIndexService(@Nullable ScheduledExecutorService externalExecutor, boolean pasive, DelayPolicy delays) {
 		this.externalExecutor = externalExecutor;
+		this.delays = checkNotNull(delays);
 		final Runnable onStart = new Runnable() {
 			public void run() {
+				token = new Object();
 				initExecutor();
 				schedule(0L);
 			}
 		};
 		final Runnable onStop = new Runnable() {
 			public void run() {
+				token = null;
 				shutdown();
+				// Wait for the running task, if any, before releasing resources.
+				running.lock();
+				try {
+					stopped();
+				} finally {
+					running.unlock();
+				}
 			}
 		};
 		this.support = new ActiveObjectSupport(onStart, null, onStop);
@@ -83,6 +108,9 @@ public abstract class AbstractIndexService extends AbstractNamed {
 	 */
 	final void initExecutor() {
 		checkState(executor == null, "Executor already initialized.");
+		if (scheduler != null) {
+			return;
+		}
 		if (externalExecutor != null) {
 			executor = externalExecutor;
 		} else {
@@ -92,17 +120,63 @@ public abstract class AbstractIndexService extends AbstractNamed {
 
 	abstract Runnable newTask();
 
+	/**
+	 * Called when the service has been stopped, in order to release resources. No task is running
+	 * and no new task will be run until the service is restarted.
+	 */
+	void stopped() {
+	}
+
 	/**
 	 * Schedules a new task.
 	 * @param delay Delay in milliseconds.
 	 */
 	final void schedule(long delay) {
-		final ScheduledExecutorService ses = executor;
-		if (ses != null) {
-			ses.schedule(newTask(), delay, TimeUnit.MILLISECONDS);
+		final Object current = token;
+		if (current == null) {
+			return;
+		}
+		final Runnable task = new Guarded(current, newTask());
+		final IndexingScheduler s = scheduler;
+		if (s != null) {
+			s.schedule(task, priority, delay);
+		} else {
+			final ScheduledExecutorService ses = executor;
+			if (ses != null) {
+				ses.schedule(task, delay, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/** Returns whether the service reindexes, using the reindexing permits of the scheduler. */
+	boolean isReindexing() {
+		return false;
+	}
+
+	/**
+	 * Must be called before writing to the index. When using a shared scheduler, tries to obtain a
+	 * writer permit without waiting. If it returns {@code false} the task must not write and should
+	 * call {@link #scheduleRetry()}.
+	 * @return Whether the service may write.
+	 */
+	final boolean beginWrite() {
+		final IndexingScheduler s = scheduler;
+		return s == null || s.tryAcquireWriter(isReindexing());
+	}
+
+	/** Must be called after writing to the index if {@link #beginWrite()} succeeded. */
+	final void endWrite() {
+		final IndexingScheduler s = scheduler;
+		if (s != null) {
+			s.releaseWriter(isReindexing());
 		}
 	}
 
+	/** Schedules a new task after failing to obtain a writer permit. The status is not changed. */
+	final void scheduleRetry() {
+		schedule(IndexingScheduler.RETRY_DELAY);
+	}
+
 	/**
 	 * Sets the index status and schedules a new task.
 	 * @param status New index status.
@@ -113,6 +187,33 @@ public abstract class AbstractIndexService extends AbstractNamed {
 		schedule(delay);
 	}
 
+	/**
+	 * Sets the index status and schedules a new task after a batch has been written.
+	 * @param status New index status.
+	 * @param operations Number of operations written.
+	 */
+	final void scheduleBatch(IndexStatus status, int operations) {
+		schedule(status, delays.afterBatch(operations));
+	}
+
+	/** Schedules a new task after an execution with nothing to do. */
+	final void scheduleIdle() {
+		schedule(delays.afterIdle());
+	}
+
+	/** Schedules a new task after an error. */
+	final void scheduleError() {
+		schedule(delays.afterError());
+	}
+
+	/**
+	 * Sets the index status and schedules a new task after an error.
+	 * @param status New index status.
+	 */
+	final void scheduleError(IndexStatus status) {
+		schedule(status, delays.afterError());
+	}
+
 	/**
 	 * Stop using the executor. If using an internal executor, shut it down.
 	 */
@@ -127,6 +228,28 @@ public abstract class AbstractIndexService extends AbstractNamed {
 		executor = null;
 	}
 
+	/* CONFIGURABLE PROPERTIES */
+
+	public void setDelays(DelayPolicy delays) {
+		this.delays = checkNotNull(delays, "The delay policy must be provided");
+	}
+
+	/**
+	 * Sets the shared scheduler to use instead of an executor.
+	 * @throws IllegalStateException if the service is running.
+	 */
+	public void setScheduler(@Nullable IndexingScheduler scheduler) {
+		checkState(token == null, "The scheduler cannot be changed while the service is running");
+		this.scheduler = scheduler;
+	}
+
+	/** Sets the task priority in the shared scheduler (lower values first). */
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
+	/* END CONFIGURABLE PROPERTIES. */
+
 	/* PUBLIC API */
 
 	public IndexStatus getIndexStatus() {
@@ -149,6 +272,28 @@ public abstract class AbstractIndexService extends AbstractNamed {
 
 	/* END PUBLIC API */
 
+	/** Task that is only run if the service has not been restarted or stopped since scheduled. */
+	private final class Guarded implements Runnable {
+		private final Object token;
+		private final Runnable task;
+
+		Guarded(Object token, Runnable task) {
+			this.token = token;
+			this.task = task;
+		}
+
+		public void run() {
+			running.lock();
+			try {
+				if (token == AbstractIndexService.this.token) {
+					task.run();
+				}
+			} finally {
+				running.unlock();
+			}
+		}
+	}
+
 	abstract class AbstractTask implements Runnable {
 		final void interrupted() {
 			log().warn("Task interruption requested. Restoring status and exiting");
@@ -15,54 +15,97 @@
  */
 package net.sf.lucis.core.impl;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
 
 import net.derquinse.common.log.ContextLog;
 import net.sf.lucis.core.DirectoryProvider;
 import net.sf.lucis.core.Loggers;
+import net.sf.lucis.core.RefreshListener;
+import net.sf.lucis.core.Warmer;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.store.Directory;
 
-import com.google.common.base.Stopwatch;
-import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
- * Abstract store implementation.
+ * Abstract store implementation. Managed readers are acquired without locking: the current reader
+ * is published through an atomic reference and only the thread that wins the refresh lock checks
+ * for changes, while the rest keep using the published reader. Only the first reader is opened
+ * while blocking. New readers are warmed up, if a warmer has been set, before being published.
+ * Readers may be refreshed by a background task as well: in that case changes notified in this JVM
+ * trigger an immediate refresh, external commits are detected by polling and query threads never
+ * check for changes.
  * @author Andres Rodriguez.
  */
 abstract class AbstractStore extends AbstractNamed implements DirectoryProvider {
-	/** Maximum time without reader checking. */
-	private static final long MAX_HOLD_MS = 5000L;
 	/** Sequence number. */
 	private final AtomicLong sequence = new AtomicLong();
-	/** Internal lock. */
+	/** Refresh lock. */
 	private final Lock lock = new ReentrantLock();
-	/** Stopwatch . */
-	@GuardedBy("lock")
-	private final Stopwatch watch = Stopwatch.createUnstarted();
-	/** Last sequence. */
-	@GuardedBy("lock")
-	private long lastSequence = Long.MIN_VALUE;
-	/** Last directory. */
-	@GuardedBy("lock")
-	private Directory lastDirectory = null;
-	/** Whether the last reader is managed. */
-	@GuardedBy("lock")
-	private boolean lastManaged = false;
-	/** Last reader. */
-	@GuardedBy("lock")
-	private IndexReader reader;
+	/** Current reader. */
+	private final AtomicReference<Current> current = new AtomicReference<Current>();
+	/** Reader warmer. */
+	private volatile Warmer warmer = null;
+	/** Maximum time without reader checking (ns). */
+	private volatile long maxStaleness = TimeUnit.MILLISECONDS.toNanos(5000L);
+	/** Refresh listeners. */
+	private final List<RefreshListener> listeners = new CopyOnWriteArrayList<RefreshListener>();
+	/** Background refresh task. */
+	private final Runnable refreshTask = new Runnable() {
+		public void run() {
+			backgroundRefresh();
+		}
+	};
+	/** Background refresh monitor. */
+	private final Object monitor = new Object();
+	/** Background refresh executor, if any. */
+	private volatile ScheduledExecutorService refresher = null;
+	/** Whether the background refresh executor is owned by the store. */
+	@GuardedBy("monitor")
+	private boolean ownRefresher = false;
+	/** Periodic background refresh. */
+	@GuardedBy("monitor")
+	private ScheduledFuture<?> periodic = null;
 
 	AbstractStore() {
 	}
 
+	/* CONFIGURABLE PROPERTIES */
+
+	/** Sets the warmer run on every new reader before it is published. */
+	public void setWarmer(@Nullable Warmer warmer) {
+		this.warmer = warmer;
+	}
+
+	/**
+	 * Sets the maximum time in ms a reader is used without checking for changes (default 5000). It
+	 * is the polling period of the background refresh as well, and takes effect for it the next time
+	 * it is started.
+	 */
+	public void setMaxStaleness(long maxStaleness) {
+		this.maxStaleness = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, maxStaleness));
+	}
+
+	/* END CONFIGURABLE PROPERTIES. */
+
 	@Override
 	final ContextLog baseLog() {
 		return Loggers.store();
@@ -76,92 +119,310 @@ abstract class AbstractStore extends AbstractNamed implements DirectoryProvider
 	/** Called when the index has changed. */
 	final void changed() {
 		sequence.incrementAndGet();
+		final ScheduledExecutorService executor = refresher;
+		if (executor != null) {
+			try {
+				executor.execute(refreshTask);
+			} catch (RejectedExecutionException e) {
+				// Shutting down.
+			}
+		}
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * @see net.sf.lucis.core.DirectoryProvider#getManagedReader()
+	/** Adds a listener notified when a new reader is published. */
+	public final void addRefreshListener(RefreshListener listener) {
+		listeners.add(checkNotNull(listener, "The listener must be provided"));
+	}
+
+	/** Removes a refresh listener. */
+	public final void removeRefreshListener(RefreshListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Starts refreshing the reader in the background with a dedicated daemon thread, which is shut
+	 * down when the refresh is stopped.
 	 */
-	public final IndexReader getManagedReader() throws IOException {
+	public final void startRefresh() {
+		startRefresh(Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat(
+				"lucis-refresh-%d").setDaemon(true).build()), true);
+	}
+
+	/**
+	 * Starts refreshing the reader in the background with a (possibly shared) executor. The index is
+	 * polled with a period of the maximum staleness, and changes notified in this JVM are refreshed
+	 * immediately. The executor is not shut down when the refresh is stopped.
+	 */
+	public final void startRefresh(ScheduledExecutorService executor) {
+		startRefresh(checkNotNull(executor, "The executor must be provided"), false);
+	}
+
+	private void startRefresh(ScheduledExecutorService executor, boolean own) {
+		synchronized (monitor) {
+			stopRefresh();
+			final long period = Math.max(1L, maxStaleness);
+			refresher = executor;
+			ownRefresher = own;
+			periodic = executor.scheduleWithFixedDelay(refreshTask, 0L, period, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/** Stops the background refresh, if started. Query threads check for changes again. */
+	public final void stopRefresh() {
+		synchronized (monitor) {
+			if (refresher == null) {
+				return;
+			}
+			periodic.cancel(false);
+			if (ownRefresher) {
+				refresher.shutdown();
+			}
+			periodic = null;
+			refresher = null;
+			ownRefresher = false;
+		}
+	}
+
+	/** Returns whether the reader is being refreshed in the background. */
+	public final boolean isRefreshing() {
+		return refresher != null;
+	}
+
+	/** Background refresh. */
+	private void backgroundRefresh() {
 		lock.lock();
-		boolean ok = false;
 		try {
-			if (!lastManaged) {
-				newReader();
-			} else if (lastSequence != sequence.get() || watch.elapsed(TimeUnit.MILLISECONDS) > MAX_HOLD_MS) {
-				reopen();
+			if (current.get() == null) {
+				publish(null, open(sequence.get()));
 			} else {
-				reader.incRef();
+				refresh(true);
 			}
-			ok = true;
-			return reader;
+		} catch (Exception e) {
+			log().error(e, "Unable to refresh reader");
 		} finally {
-			if (!ok) {
-				shutdown();
-			}
 			lock.unlock();
 		}
 	}
 
-	private void setManagedReader(IndexReader r) {
-		r.incRef();
-		reader = r;
-		lastManaged = true;
-		watch.reset().start();
+	/** Opens a new reader for the provided directory. */
+	IndexReader openReader(Directory directory) throws IOException {
+		return IndexReader.open(directory);
 	}
 
-	private void newReader() throws IOException {
-		lastDirectory = getDirectory();
-		if (lastDirectory == null || !IndexReader.indexExists(lastDirectory)) {
-			log().warn("Directory [%s] does not exist. Using empty one.", lastDirectory);
-			newEmpty();
-		} else {
+	/** Reopens the provided reader, returning {@code null} if there are no changes. */
+	IndexReader reopenReader(IndexReader reader) throws IOException {
+		return IndexReader.openIfChanged(reader);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.DirectoryProvider#getManagedReader()
+	 */
+	public final IndexReader getManagedReader() throws IOException {
+		Current c = current.get();
+		if (c == null) {
+			lock.lock();
 			try {
-				setManagedReader(IndexReader.open(lastDirectory));
-			} catch (IOException e) {
-				log().error(e, "Unable to open directory [%s]. Using empty one.", lastDirectory);
-				newEmpty();
+				c = current.get();
+				if (c == null) {
+					c = open(sequence.get());
+					publish(null, c);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		if (refresher == null && isStale(c) && lock.tryLock()) {
+			try {
+				refresh(false);
+			} finally {
+				lock.unlock();
+			}
+		}
+		while (true) {
+			c = current.get();
+			if (c == null) {
+				return getManagedReader();
+			}
+			if (c.reader.tryIncRef()) {
+				return c.reader;
+			}
+			// The reader has been closed by a concurrent refresh (or externally), so try again.
+			if (current.get() == c) {
+				lock.lock();
+				try {
+					if (current.compareAndSet(c, null)) {
+						log().warn("Published reader for directory [%s] was closed", c.directory);
+					}
+				} finally {
+					lock.unlock();
+				}
 			}
 		}
 	}
 
-	private void newEmpty() throws IOException {
-		lastManaged = false;
-		lastDirectory = EmptyDirectory.get();
-		lastSequence = Long.MIN_VALUE;
-		reader = IndexReader.open(lastDirectory);
-		watch.reset();
+	/**
+	 * Returns the published reader if it can be used without checking for changes, {@code null}
+	 * otherwise. It is a cheap in-memory check that allows caches built on top of managed readers
+	 * to be validated without acquiring a reader. No reference is acquired.
+	 */
+	final IndexReader getPublishedReader() {
+		final Current c = current.get();
+		if (c == null || (refresher == null && isStale(c))) {
+			return null;
+		}
+		return c.reader;
 	}
 
-	private void shutdown() {
+	/**
+	 * Returns whether the published reader has to be checked for changes. The empty fallback is
+	 * checked with the same throttling, so a missing index is not looked for on every request.
+	 */
+	private boolean isStale(Current c) {
+		return c.sequence != sequence.get() || System.nanoTime() - c.checked > maxStaleness;
+	}
+
+	/** Returns whether a directory contains an index. */
+	private static boolean exists(@Nullable Directory directory) throws IOException {
+		return directory != null && IndexReader.indexExists(directory);
+	}
+
+	/**
+	 * Opens a new reader, falling back to an empty one if the directory is not available.
+	 * @param seq Sequence number read before opening.
+	 */
+	private Current open(long seq) throws IOException {
+		final Directory directory = getDirectory();
+		if (!exists(directory)) {
+			log().warn("Directory [%s] does not exist. Using empty one.", directory);
+			return empty(seq);
+		}
 		try {
-			Closeables.close(reader, true);
-			reader = null;
-			lastManaged = false;
-			watch.reset();
+			return new Current(directory, warm(openReader(directory)), false, seq);
 		} catch (IOException e) {
-			// TODO: Log
+			log().error(e, "Unable to open directory [%s]. Using empty one.", directory);
+			return empty(seq);
 		}
 	}
 
-	private void reopen() throws IOException {
-		Directory newDirectory = getDirectory();
-		if (lastDirectory != newDirectory) {
-			shutdown();
-			newReader();
+	private Current empty(long seq) throws IOException {
+		final Directory directory = EmptyDirectory.get();
+		return new Current(directory, IndexReader.open(directory), true, seq);
+	}
+
+	/**
+	 * Checks the published reader for changes. Must be called holding the refresh lock. Commits
+	 * performed elsewhere (e.g. by another JVM) are detected by checking whether the reader is
+	 * current.
+	 * @param force Whether to check even if the reader is not stale.
+	 */
+	private void refresh(boolean force) throws IOException {
+		final Current c = current.get();
+		if (c == null || (!force && !isStale(c))) {
+			return;
+		}
+		// Changes notified while opening will cause another refresh.
+		final long seq = sequence.get();
+		final Current next;
+		if (c.empty) {
+			if (!exists(getDirectory())) {
+				// Still missing, keep the published empty reader. The reference is transferred.
+				current.set(new Current(c.directory, c.reader, true, seq));
+				return;
+			}
+			next = open(seq);
+			if (next.empty) {
+				// Unable to open it, nothing has changed for the users of the store.
+				next.reader.decRef();
+				current.set(new Current(c.directory, c.reader, true, seq));
+				return;
+			}
+		} else if (getDirectory() != c.directory) {
+			next = open(seq);
 		} else {
+			IndexReader r = null;
 			try {
-				IndexReader r = IndexReader.openIfChanged(reader);
-				if (r != null) {
-					shutdown();
-					setManagedReader(r);
-				} else {
-					setManagedReader(reader);
+				if (c.sequence == seq && c.reader.isCurrent()) {
+					current.set(new Current(c.directory, c.reader, false, seq));
+					return;
 				}
+				r = reopenReader(c.reader);
 			} catch (IOException e) {
-				log().error(e, "Unable to reopen directory [%s]. Using empty one.", lastDirectory);
-				newEmpty();
+				log().error(e, "Unable to reopen directory [%s]. Using empty one.", c.directory);
+				publish(c, empty(seq));
+				return;
+			}
+			if (r == null) {
+				// Same reader, the reference is transferred.
+				current.set(new Current(c.directory, c.reader, false, seq));
+				return;
 			}
+			next = new Current(c.directory, warm(r), false, seq);
+		}
+		publish(c, next);
+	}
+
+	/** Warms up a new reader. Warming errors are logged and ignored. */
+	private IndexReader warm(IndexReader reader) {
+		final Warmer w = warmer;
+		if (w == null) {
+			return reader;
+		}
+		// The searcher releases the reference when closed.
+		reader.incRef();
+		final DefaultLucisSearcher searcher = new DefaultLucisSearcher(reader);
+		try {
+			w.warm(searcher);
+		} catch (RuntimeException e) {
+			log().error(e, "Unable to warm up reader for [%s]", this);
+		} finally {
+			searcher.close();
+		}
+		return reader;
+	}
+
+	/**
+	 * Publishes a new reader, releasing the reference held on the previous one and notifying the
+	 * listeners.
+	 */
+	private void publish(@Nullable Current previous, Current next) {
+		current.set(next);
+		if (previous != null) {
+			try {
+				previous.reader.decRef();
+			} catch (IOException e) {
+				log().error(e, "Unable to release reader for directory [%s]", previous.directory);
+			}
+		}
+		for (RefreshListener listener : listeners) {
+			try {
+				listener.refreshed(this, next.reader);
+			} catch (RuntimeException e) {
+				log().error(e, "Error in refresh listener [%s]", listener);
+			}
+		}
+	}
+
+	/** Published reader. The store holds a reference to the reader while it is published. */
+	@Immutable
+	private static final class Current {
+		/** Directory. */
+		final Directory directory;
+		/** Reader. */
+		final IndexReader reader;
+		/** Whether the reader is the empty fallback. */
+		final boolean empty;
+		/** Sequence number when last checked. */
+		final long sequence;
+		/** Time when last checked (ns). */
+		final long checked;
+
+		Current(Directory directory, IndexReader reader, boolean empty, long sequence) {
+			this.directory = directory;
+			this.reader = reader;
+			this.empty = empty;
+			this.sequence = sequence;
+			this.checked = System.nanoTime();
 		}
 	}
 
@@ -16,13 +16,34 @@
 package net.sf.lucis.core.impl;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static net.sf.lucis.core.Interruption.throwIfInterrupted;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
 import net.derquinse.common.log.ContextLog;
+import net.sf.lucis.core.Batch;
+import net.sf.lucis.core.Batch.Addition;
 import net.sf.lucis.core.Factory;
 import net.sf.lucis.core.Loggers;
 
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
 
 import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 /**
  * Abstract writer implementation.
@@ -31,6 +52,12 @@ import com.google.common.base.Supplier;
 abstract class AbstractWriter extends AbstractNamed {
 	/** Writer configuration. */
 	private final Supplier<IndexWriterConfig> config;
+	/** Executor for parallel additions. */
+	private volatile ExecutorService executor = null;
+	/** Number of parallel addition tasks. */
+	private volatile int parallelism = 1;
+	/** Minimum number of additions to perform them in parallel. */
+	private volatile int parallelThreshold = 1000;
 
 	AbstractWriter() {
 		this(Factory.get().writerConfigSupplier());
@@ -40,6 +67,28 @@ abstract class AbstractWriter extends AbstractNamed {
 		this.config = checkNotNull(config, "A writer configuration supplier must be provided");
 	}
 
+	/* CONFIGURABLE PROPERTIES */
+
+	/**
+	 * Sets the executor used to perform additions in parallel. Lucene limits the number of concurrent
+	 * indexing threads per index writer to the number of thread states of the writer configuration.
+	 */
+	public void setExecutor(@Nullable ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/** Sets the number of parallel addition tasks. Values lower than 2 disable parallel additions. */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/** Sets the minimum number of additions of a batch to perform them in parallel. */
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/* END CONFIGURABLE PROPERTIES. */
+
 	@Override
 	final ContextLog baseLog() {
 		return Loggers.writer();
@@ -55,4 +104,161 @@ abstract class AbstractWriter extends AbstractNamed {
 		return checkNotNull(config.get(), "Null writer config provider");
 	}
 
+	/**
+	 * Applies the operations of a batch to an index writer. Deletions are performed in bulk and
+	 * skipped if the index is being recreated. No commit is performed.
+	 * @param writer Index writer to use.
+	 * @param batch Batch to apply.
+	 * @param analyzer Default analyzer.
+	 */
+	final void apply(IndexWriter writer, Batch<?, ?> batch, Analyzer analyzer) throws InterruptedException,
+			IOException {
+		// Deletions
+		if (!batch.isRecreate()) {
+			throwIfInterrupted();
+			batch.deleteFrom(writer);
+		}
+		// Updates, at most one per term, so they can be performed in parallel
+		final ExecutorService e = executor;
+		addAll(writer, batch.getUpdates(), analyzer, e);
+		// Additions
+		if (e != null && !batch.isSpilled()) {
+			addAll(writer, batch.getAdditions(), analyzer, e);
+		} else {
+			add(writer, batch.additions(), analyzer, null);
+		}
+	}
+
+	/**
+	 * Adds a list of documents, in parallel if allowed.
+	 * @param writer Index writer to use.
+	 * @param additions Additions to perform.
+	 * @param analyzer Default analyzer.
+	 * @param executor Executor for parallel additions, if any.
+	 */
+	private void addAll(IndexWriter writer, List<Addition> additions, Analyzer analyzer,
+			@Nullable ExecutorService executor) throws InterruptedException, IOException {
+		final int n = Math.min(parallelism, additions.size());
+		if (executor != null && n > 1 && additions.size() >= parallelThreshold) {
+			addParallel(writer, additions, analyzer, executor, n);
+		} else {
+			add(writer, additions, analyzer, null);
+		}
+	}
+
+	/**
+	 * Adds a sequence of documents. Additions with a term are performed as updates.
+	 * @param writer Index writer to use.
+	 * @param additions Additions to perform.
+	 * @param analyzer Default analyzer.
+	 * @param stop Cooperative stop flag, if any.
+	 */
+	private static void add(IndexWriter writer, Iterable<Addition> additions, Analyzer analyzer,
+			@Nullable AtomicBoolean stop) throws InterruptedException, IOException {
+		for (Addition addition : additions) {
+			throwIfInterrupted();
+			if (stop != null && stop.get()) {
+				return;
+			}
+			final Analyzer aa = addition.getAnalyzer();
+			final Term term = addition.getTerm();
+			if (term != null) {
+				writer.updateDocument(term, addition.getDocument(), aa != null ? aa : analyzer);
+			} else {
+				writer.addDocument(addition.getDocument(), aa != null ? aa : analyzer);
+			}
+		}
+	}
+
+	/**
+	 * Adds a list of documents in parallel, splitting it in consecutive chunks. If any task fails or
+	 * the current thread is interrupted the remaining tasks are stopped and waited for, so that the
+	 * index writer can be safely rolled back.
+	 */
+	private void addParallel(final IndexWriter writer, List<Addition> additions, final Analyzer analyzer,
+			ExecutorService executor, int n) throws InterruptedException, IOException {
+		final AtomicBoolean stop = new AtomicBoolean();
+		final int size = additions.size();
+		final int chunk = (size + n - 1) / n;
+		final List<Future<Void>> futures = Lists.newArrayListWithCapacity(n);
+		try {
+			for (int from = 0; from < size; from += chunk) {
+				final List<Addition> part = additions.subList(from, Math.min(size, from + chunk));
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						add(writer, part, analyzer, stop);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException ee) {
+			stop.set(true);
+			await(futures);
+			final Throwable cause = ee.getCause();
+			Throwables.propagateIfPossible(cause, InterruptedException.class, IOException.class);
+			throw new IOException(cause);
+		} catch (InterruptedException ie) {
+			stop.set(true);
+			await(futures);
+			throw ie;
+		} catch (RuntimeException re) {
+			stop.set(true);
+			await(futures);
+			throw re;
+		}
+	}
+
+	/** Waits uninterruptibly for the completion of a list of tasks. */
+	private static void await(List<Future<Void>> futures) {
+		for (Future<Void> future : futures) {
+			try {
+				Uninterruptibles.getUninterruptibly(future);
+			} catch (Exception e) {
+				// Already reported.
+			}
+		}
+	}
+
+	/**
+	 * Returns the batches that have to be applied: nulls are ignored and, as every recreation
+	 * discards the previous operations, the list starts at the last batch that recreates the index.
+	 * @param batches Batches to apply, in order.
+	 */
+	static <T, P> List<Batch<T, P>> pending(List<Batch<T, P>> batches) {
+		if (batches == null || batches.isEmpty()) {
+			return ImmutableList.of();
+		}
+		final List<Batch<T, P>> pending = Lists.newArrayListWithCapacity(batches.size());
+		for (Batch<T, P> batch : batches) {
+			if (batch != null) {
+				if (batch.isRecreate()) {
+					pending.clear();
+				}
+				pending.add(batch);
+			}
+		}
+		return pending;
+	}
+
+	/** Returns whether every batch of a list is empty. */
+	static boolean isEmpty(List<? extends Batch<?, ?>> batches) {
+		for (Batch<?, ?> batch : batches) {
+			if (!batch.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Rolls back an index writer, ignoring any exception. */
+	final void rollback(IndexWriter writer) {
+		try {
+			writer.rollback();
+		} catch (Exception e) {
+		}
+	}
+
 }
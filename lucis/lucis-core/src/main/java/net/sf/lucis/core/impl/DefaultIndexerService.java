@@ -15,16 +15,30 @@
  */
 package net.sf.lucis.core.impl;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 
 import net.sf.lucis.core.Batch;
+import net.sf.lucis.core.DeferredCommit;
 import net.sf.lucis.core.Delays;
+import net.sf.lucis.core.GroupCommit;
+import net.sf.lucis.core.GroupCommitWriter;
 import net.sf.lucis.core.IndexStatus;
 import net.sf.lucis.core.Indexer;
 import net.sf.lucis.core.IndexerService;
+import net.sf.lucis.core.ServiceHook;
 import net.sf.lucis.core.Store;
 import net.sf.lucis.core.Writer;
 
+import com.google.common.base.Objects;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+
 /**
  * Lucene-based index manager.
  * @author Andres Rodriguez
@@ -38,15 +52,26 @@ public class DefaultIndexerService<T, P> extends AbstractIndexService implements
 	private final Store<T> store;
 	/** Indexer. */
 	private final Indexer<T, P> indexer;
-	/** Delays. */
-	private volatile Delays delays = Delays.constant(1000);
+	/** Group commit writer, if the writer supports it. */
+	@Nullable
+	private final GroupCommitWriter groupWriter;
+	/** Store commit notifications, if the store defers its commits. */
+	@Nullable
+	private final DeferredCommit commits;
+	/** Lifecycle hooks of the store and the writer. */
+	private final List<ServiceHook> hooks;
+	/** Group commit budget. */
+	private volatile GroupCommit groupCommit = GroupCommit.disabled();
 
 	public DefaultIndexerService(Store<T> store, Writer writer, Indexer<T, P> indexer,
 			ScheduledExecutorService externalExecutor, boolean pasive) {
-		super(externalExecutor, pasive);
+		super(externalExecutor, pasive, Delays.constant(1000));
 		this.store = store;
 		this.writer = writer;
 		this.indexer = indexer;
+		this.groupWriter = writer instanceof GroupCommitWriter ? (GroupCommitWriter) writer : null;
+		this.commits = store instanceof DeferredCommit ? (DeferredCommit) store : null;
+		this.hooks = hooks(store, writer);
 	}
 
 	public DefaultIndexerService(Store<T> store, Writer writer, Indexer<T, P> indexer) {
@@ -55,8 +80,8 @@ public class DefaultIndexerService<T, P> extends AbstractIndexService implements
 
 	/* CONFIGURABLE PROPERTIES */
 
-	public void setDelays(Delays delays) {
-		this.delays = delays;
+	public void setGroupCommit(GroupCommit groupCommit) {
+		this.groupCommit = checkNotNull(groupCommit, "The group commit budget must be provided");
 	}
 
 	/* END CONFIGURABLE PROPERTIES. */
@@ -65,41 +90,99 @@ public class DefaultIndexerService<T, P> extends AbstractIndexService implements
 		return new Task();
 	}
 
+	/** Returns the lifecycle hooks among the provided objects. */
+	static List<ServiceHook> hooks(Object... objects) {
+		final List<ServiceHook> hooks = Lists.newArrayListWithCapacity(objects.length);
+		for (Object object : objects) {
+			if (object instanceof ServiceHook) {
+				hooks.add((ServiceHook) object);
+			}
+		}
+		return hooks;
+	}
+
+	@Override
+	void stopped() {
+		for (ServiceHook hook : hooks) {
+			try {
+				hook.stopped(store);
+			} catch (RuntimeException e) {
+				log().error(e, "Error in service stop hook [%s]", hook);
+			}
+		}
+	}
+
 	private final class Task extends AbstractTask {
 		public void run() {
+			// The permit is obtained before collecting so that no batch is built in vain.
+			if (!beginWrite()) {
+				log().trace("No writer permit available. Retrying later.");
+				scheduleRetry();
+				return;
+			}
+			try {
+				index();
+			} finally {
+				endWrite();
+			}
+		}
+
+		private void index() {
 			final T checkpoint;
 			try {
 				checkpoint = store.getCheckpoint();
 			} catch (Exception e) {
 				log().error(e, "Error obtaining checkpoint");
-				schedule(IndexStatus.ERROR, delays.getError());
+				scheduleError(IndexStatus.ERROR);
 				return;
 			}
-			final Batch<T, P> batch;
+			final List<Batch<T, P>> batches = Lists.newArrayList();
 			try {
-				batch = indexer.index(checkpoint);
+				run(checkpoint, batches);
+			} finally {
+				for (Batch<T, P> batch : batches) {
+					batch.discard();
+				}
+			}
+		}
+
+		/** Collects the batches and writes them. */
+		private void run(T checkpoint, List<Batch<T, P>> batches) {
+			boolean failed = false;
+			try {
+				collect(checkpoint, batches);
 			} catch (InterruptedException e) {
 				interrupted();
 				return;
 			} catch (RuntimeException e) {
 				log().error(e, "Unable to obtain batch");
-				schedule(delays.getError());
-				return;
+				if (batches.isEmpty()) {
+					scheduleError();
+					return;
+				}
+				// Write the batches already collected.
+				failed = true;
 			}
 			try {
-				if (batch == null) {
+				if (batches.isEmpty()) {
 					log().trace("Empty batch. Nothing to do.");
-					schedule(delays.getIdle());
+					idle();
+					scheduleIdle();
 				} else {
-					IndexStatus status = writer.write(store, batch);
+					final List<Batch<T, P>> written = Lists.newArrayListWithCapacity(batches.size());
+					final IndexStatus status = write(batches, written);
 					if (status == null) {
 						log().trace("Writer had nothing to do.");
-						schedule(delays.getIdle());
+						idle();
+						scheduleIdle();
 					} else {
 						log().trace("Writing complete. Calling post commit hook...");
-						postCommit(batch);
-						log().trace("Post commit hook completed.");
-						schedule(status, delays.getNormal());
+						afterCommit(payloads(written));
+						if (failed) {
+							scheduleError(status);
+						} else {
+							scheduleBatch(status, operations(written));
+						}
 					}
 				}
 			} catch (InterruptedException e) {
@@ -107,16 +190,132 @@ public class DefaultIndexerService<T, P> extends AbstractIndexService implements
 				return;
 			} catch (RuntimeException e) {
 				log().error(e, "Unable to write batch");
-				schedule(delays.getError());
+				scheduleError();
 			}
 		}
 
-		private void postCommit(Batch<T, P> batch) {
-			if (batch == null || batch.getPayload() == null) {
+		/**
+		 * Collects batches until the group commit budget is reached, the indexer has nothing to do or
+		 * the checkpoint does not advance.
+		 * @param checkpoint Initial checkpoint.
+		 * @param batches List to add the collected batches to.
+		 */
+		private void collect(T checkpoint, List<Batch<T, P>> batches) throws InterruptedException {
+			final GroupCommit budget = groupCommit;
+			final Stopwatch watch = Stopwatch.createStarted();
+			T current = checkpoint;
+			int operations = 0;
+			long bytes = 0L;
+			while (true) {
+				final Batch<T, P> batch = indexer.index(current);
+				if (batch == null) {
+					return;
+				}
+				if (Objects.equal(current, batch.getCheckpoint())) {
+					if (batches.isEmpty()) {
+						batches.add(batch);
+					} else {
+						// Not written, release its temporary file if spilled.
+						batch.discard();
+					}
+					return;
+				}
+				batches.add(batch);
+				current = batch.getCheckpoint();
+				operations += batch.size();
+				bytes += batch.getEstimatedBytes();
+				if (budget.isReached(operations, bytes, watch.elapsed(TimeUnit.MILLISECONDS))) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Writes the collected batches, with a single commit if the writer supports it or one by one
+		 * otherwise, stopping at the first batch that is not written successfully.
+		 * @param batches Batches to write.
+		 * @param written List to add the written batches to.
+		 * @return The final index status or {@code null} if the writer had nothing to do.
+		 */
+		private IndexStatus write(List<Batch<T, P>> batches, List<Batch<T, P>> written) throws InterruptedException {
+			if (groupWriter != null) {
+				final IndexStatus status = groupWriter.writeAll(store, batches);
+				if (status != null) {
+					written.addAll(batches);
+				}
+				return status;
+			}
+			IndexStatus status = null;
+			for (Batch<T, P> batch : batches) {
+				final IndexStatus s = writer.write(store, batch);
+				if (s != null) {
+					written.add(batch);
+					status = s;
+					if (s != IndexStatus.OK) {
+						break;
+					}
+				}
+			}
+			return status;
+		}
+
+		/** Returns the number of operations of a list of batches. */
+		private int operations(List<Batch<T, P>> batches) {
+			int operations = 0;
+			for (Batch<T, P> batch : batches) {
+				operations += batch.size();
+			}
+			return operations;
+		}
+
+		/** Notifies the hooks that there is nothing else to do. */
+		private void idle() {
+			for (ServiceHook hook : hooks) {
+				try {
+					hook.idle(store);
+				} catch (RuntimeException e) {
+					log().error(e, "Error in service idle hook [%s]", hook);
+				}
+			}
+		}
+
+		/** Returns the payloads of a list of batches. */
+		private List<P> payloads(List<Batch<T, P>> batches) {
+			final List<P> payloads = Lists.newArrayListWithCapacity(batches.size());
+			for (Batch<T, P> batch : batches) {
+				if (batch != null && batch.getPayload() != null) {
+					payloads.add(batch.getPayload());
+				}
+			}
+			return payloads;
+		}
+
+		/**
+		 * Calls the post commit hook for the written payloads. If the store defers its commits, the hook
+		 * is called once the changes are durable, and not at all if they are rolled back.
+		 */
+		private void afterCommit(final List<P> payloads) {
+			if (payloads.isEmpty()) {
 				return;
 			}
+			final Runnable task = new Runnable() {
+				public void run() {
+					for (P payload : payloads) {
+						postCommit(payload);
+					}
+					log().trace("Post commit hook completed.");
+				}
+			};
+			if (commits != null) {
+				commits.afterCommit(task);
+			} else {
+				task.run();
+			}
+		}
+
+		private void postCommit(P payload) {
 			try {
-				indexer.afterCommit(batch.getPayload());
+				indexer.afterCommit(payload);
 			} catch (Throwable t) {
 				log().error(t, "Error processing post commit hook");
 			}
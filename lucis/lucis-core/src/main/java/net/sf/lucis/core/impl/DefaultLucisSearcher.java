@@ -16,17 +16,23 @@
 package net.sf.lucis.core.impl;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
 
 import net.sf.derquinse.lucis.SearchException;
-import net.sf.lucis.core.LucisSearcher;
+import net.sf.lucis.core.ExtendedLucisSearcher;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopFieldDocs;
@@ -38,15 +44,55 @@ import com.google.common.io.Closeables;
  * Default LucisSearcher implementation.
  * @author Andres Rodriguez
  */
-public final class DefaultLucisSearcher implements LucisSearcher {
+public final class DefaultLucisSearcher implements ExtendedLucisSearcher {
 	/** Index reader. */
 	private final IndexReader reader;
 	/** Index searcher. */
 	private final IndexSearcher searcher;
+	/** Whether the index searcher is shared with other searchers. */
+	private final boolean shared;
+	/** Task run once the reference to the reader has been released, if any. */
+	private final Runnable released;
+	/** Whether the searcher has been closed. */
+	private final AtomicBoolean closed = new AtomicBoolean();
 
 	DefaultLucisSearcher(IndexReader reader) {
+		this(reader, (ExecutorService) null);
+	}
+
+	/**
+	 * Constructor.
+	 * @param reader Index reader.
+	 * @param executor Executor used to search the segments of the reader in parallel, if any.
+	 */
+	DefaultLucisSearcher(IndexReader reader, @Nullable ExecutorService executor) {
 		this.reader = Preconditions.checkNotNull(reader, "The index reader must be provided");
-		this.searcher = new IndexSearcher(reader);
+		this.searcher = newSearcher(reader, executor);
+		this.shared = false;
+		this.released = null;
+	}
+
+	/**
+	 * Creates an index searcher. If an executor is provided, searches returning top hits are
+	 * performed in parallel over the segments of the reader and merged. Searches with collectors are
+	 * always performed in the calling thread.
+	 */
+	static IndexSearcher newSearcher(IndexReader reader, @Nullable ExecutorService executor) {
+		return executor != null ? new IndexSearcher(reader, executor) : new IndexSearcher(reader);
+	}
+
+	/**
+	 * Creates a lease on a shared index searcher. Closing the lease only releases the reference to
+	 * the reader.
+	 * @param reader Index reader, the caller must have acquired a reference for the lease.
+	 * @param searcher Shared index searcher over the reader.
+	 * @param released Task to run once the reference to the reader has been released, if any.
+	 */
+	DefaultLucisSearcher(IndexReader reader, IndexSearcher searcher, @Nullable Runnable released) {
+		this.reader = Preconditions.checkNotNull(reader, "The index reader must be provided");
+		this.searcher = Preconditions.checkNotNull(searcher, "The index searcher must be provided");
+		this.shared = true;
+		this.released = released;
 	}
 
 	public final Document doc(int i) {
@@ -59,6 +105,20 @@ public final class DefaultLucisSearcher implements LucisSearcher {
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.ExtendedLucisSearcher#doc(int, org.apache.lucene.document.FieldSelector)
+	 */
+	public final Document doc(int i, FieldSelector selector) {
+		try {
+			return searcher.doc(i, selector);
+		} catch (CorruptIndexException e) {
+			throw new SearchException(e);
+		} catch (IOException e) {
+			throw new SearchException(e);
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see net.sf.lucis.core.LucisSearcher#rewrite(org.apache.lucene.search.Query)
@@ -97,12 +157,39 @@ public final class DefaultLucisSearcher implements LucisSearcher {
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.ExtendedLucisSearcher#searchAfter(org.apache.lucene.search.ScoreDoc,
+	 * org.apache.lucene.search.Query, org.apache.lucene.search.Filter, int)
+	 */
+	public final TopDocs searchAfter(ScoreDoc after, Query query, Filter filter, int n) {
+		try {
+			return searcher.searchAfter(after, query, filter, n);
+		} catch (IOException e) {
+			throw new SearchException(e);
+		}
+	}
+
+	/**
+	 * Closes the searcher, releasing the reference to the reader with {@link IndexReader#decRef()}:
+	 * managed readers are shared, and closing them would prevent other holders from releasing
+	 * theirs. A lease on a shared index searcher only releases its reference, leaving the index
+	 * searcher open for the other leases.
+	 */
 	public void close() {
+		if (!closed.compareAndSet(false, true)) {
+			return;
+		}
 		try {
-			Closeables.close(searcher, true);
-			Closeables.close(reader, true);
+			if (!shared) {
+				Closeables.close(searcher, true);
+			}
+			reader.decRef();
 		} catch(IOException e) {
 			// TODO
 		}
+		if (released != null) {
+			released.run();
+		}
 	}
 }
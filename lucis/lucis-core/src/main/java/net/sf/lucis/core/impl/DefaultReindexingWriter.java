@@ -20,18 +20,25 @@ import static net.sf.lucis.core.Interruption.throwIfInterrupted;
 
 import java.util.concurrent.Callable;
 
-import net.sf.lucis.core.Adder;
+import net.sf.lucis.core.ConcurrentAdder;
 import net.sf.lucis.core.FullIndexer;
+import net.sf.lucis.core.IncrementalAdder;
+import net.sf.lucis.core.IncrementalFullIndexer;
+import net.sf.lucis.core.IncrementalReindexingStore;
 import net.sf.lucis.core.IndexException;
 import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.ParallelFullIndexer;
 import net.sf.lucis.core.ReindexingStore;
 import net.sf.lucis.core.ReindexingWriter;
+import net.sf.lucis.core.StoreException;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.store.Directory;
 
 import com.google.common.base.Supplier;
@@ -48,12 +55,35 @@ public final class DefaultReindexingWriter extends AbstractWriter implements Rei
 		super(config);
 	}
 
+	/**
+	 * Seeds the destination of an incremental reindexing.
+	 * @return Whether the destination has been seeded.
+	 */
+	private boolean seed(ReindexingStore store, FullIndexer<?> indexer) {
+		if (!(indexer instanceof IncrementalFullIndexer) || !(store instanceof IncrementalReindexingStore)) {
+			return false;
+		}
+		try {
+			return ((IncrementalReindexingStore) store).seedDestination();
+		} catch (StoreException e) {
+			log().error(e, "Unable to seed destination directory. Performing full reindexing");
+			return false;
+		}
+	}
+
 	public <P> P reindex(ReindexingStore store, FullIndexer<P> indexer) throws InterruptedException {
-		final AdderImpl adder = new AdderImpl(store.getDestinationDirectory(), store.getCheckpoint());
+		final boolean incremental = seed(store, indexer);
+		final AdderImpl adder = new AdderImpl(store.getDestinationDirectory(), store.getCheckpoint(), incremental);
 		final boolean indexed;
 		P payload = null;
 		try {
-			payload = indexer.index(adder);
+			if (indexer instanceof IncrementalFullIndexer) {
+				payload = ((IncrementalFullIndexer<P>) indexer).index((IncrementalAdder) adder);
+			} else if (indexer instanceof ParallelFullIndexer) {
+				payload = ((ParallelFullIndexer<P>) indexer).index((ConcurrentAdder) adder);
+			} else {
+				payload = indexer.index(adder);
+			}
 			indexed = adder.done();
 			adder.commit();
 		} finally {
@@ -67,25 +97,29 @@ public final class DefaultReindexingWriter extends AbstractWriter implements Rei
 	}
 
 	/**
-	 * Default adder implementation. Not thread safe.
+	 * Default adder implementation. Documents may be added, updated and deleted concurrently, the rest
+	 * of the operations are performed by the writer thread once the indexer has finished.
 	 * @author Andres Rodriguez.
 	 */
-	private class AdderImpl implements Adder {
+	private class AdderImpl implements ConcurrentAdder, IncrementalAdder {
 		private final Directory directory;
 		private final IndexWriterConfig config;
-		private IndexWriter writer = null;
-		private IndexStatus status = IndexStatus.OK;
-		private String checkpoint;
-		private boolean skipped = false;
-		private boolean done = false;
+		/** Whether the destination contains a copy of the current index. */
+		private final boolean incremental;
+		private volatile IndexWriter writer = null;
+		private volatile IndexStatus status = IndexStatus.OK;
+		private volatile String checkpoint;
+		private volatile boolean skipped = false;
+		private volatile boolean done = false;
 
-		private AdderImpl(final Directory directory, String checkpoint) {
+		private AdderImpl(final Directory directory, String checkpoint, boolean incremental) {
 			this.directory = directory;
 			this.checkpoint = checkpoint;
-			this.config = config().setOpenMode(OpenMode.CREATE);
+			this.incremental = incremental;
+			this.config = config().setOpenMode(incremental ? OpenMode.APPEND : OpenMode.CREATE);
 		}
 
-		void on() throws InterruptedException {
+		synchronized void on() throws InterruptedException {
 			throwIfInterrupted();
 			checkState(!done, "Adder already closed");
 			if (writer == null) {
@@ -103,19 +137,60 @@ public final class DefaultReindexingWriter extends AbstractWriter implements Rei
 		}
 
 		public void add(final Document document, final Analyzer analyzer) throws InterruptedException {
+			run(new Callable<Object>() {
+				public Object call() throws Exception {
+					writer.addDocument(document, analyzer);
+					return null;
+				}
+			});
+		}
+
+		public boolean isIncremental() throws InterruptedException {
+			throwIfInterrupted();
+			return incremental;
+		}
+
+		public void delete(final Term term) throws InterruptedException {
+			run(new Callable<Object>() {
+				public Object call() throws Exception {
+					writer.deleteDocuments(term);
+					return null;
+				}
+			});
+		}
+
+		public void delete(final Query query) throws InterruptedException {
+			run(new Callable<Object>() {
+				public Object call() throws Exception {
+					writer.deleteDocuments(query);
+					return null;
+				}
+			});
+		}
+
+		public void update(Term term, Document document) throws InterruptedException {
+			update(term, document, config.getAnalyzer());
+		}
+
+		public void update(final Term term, final Document document, final Analyzer analyzer)
+				throws InterruptedException {
+			run(new Callable<Object>() {
+				public Object call() throws Exception {
+					writer.updateDocument(term, document, analyzer);
+					return null;
+				}
+			});
+		}
+
+		/** Runs an index operation, recording the failure status. */
+		private void run(Callable<Object> operation) throws InterruptedException {
 			throwIfInterrupted();
 			if (skipped) {
 				return;
 			}
 			try {
 				on();
-				final Callable<Object> callable = new Callable<Object>() {
-					public Object call() throws Exception {
-						writer.addDocument(document, analyzer);
-						return null;
-					}
-				};
-				MayFail.run(callable);
+				MayFail.run(operation);
 			} catch (IndexException e) {
 				status = e.getStatus();
 				throw e;
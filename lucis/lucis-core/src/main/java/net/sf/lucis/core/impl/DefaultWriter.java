@@ -17,37 +17,69 @@ package net.sf.lucis.core.impl;
 
 import static net.sf.lucis.core.Interruption.throwIfInterrupted;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.concurrent.GuardedBy;
 
 import net.sf.lucis.core.Batch;
-import net.sf.lucis.core.Batch.Addition;
+import net.sf.lucis.core.DirectoryProvider;
+import net.sf.lucis.core.GroupCommitWriter;
 import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.ServiceHook;
 import net.sf.lucis.core.Store;
-import net.sf.lucis.core.Writer;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.LockObtainFailedException;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
+import com.google.common.collect.Maps;
 
 /**
- * Default writer implementation.
+ * Default writer implementation. By default an index writer is opened and closed for every batch.
+ * In persistent mode the index writer of each directory is kept open between batches and it is only
+ * reopened after a failure or when the writer is closed. The index writer of a store is closed as
+ * well when an indexer service using it is stopped.
  * @author Andres Rodriguez.
  */
-public final class DefaultWriter extends AbstractWriter implements Writer {
+public final class DefaultWriter extends AbstractWriter implements GroupCommitWriter, ServiceHook, Closeable {
+	/** Whether to keep the index writers open. */
+	private final boolean persistent;
+	/** Open index writers in persistent mode. */
+	@GuardedBy("writers")
+	private final Map<Directory, IndexWriter> writers = Maps.newHashMap();
+
 	public DefaultWriter() {
+		this.persistent = false;
 	}
 
 	public DefaultWriter(Supplier<IndexWriterConfig> config) {
+		this(config, false);
+	}
+
+	/**
+	 * Constructor.
+	 * @param config Writer configuration supplier.
+	 * @param persistent Whether to keep the index writers open between batches.
+	 */
+	public DefaultWriter(Supplier<IndexWriterConfig> config, boolean persistent) {
 		super(config);
+		this.persistent = persistent;
+	}
+
+	/** Returns whether the writer keeps the index writers open between batches. */
+	public boolean isPersistent() {
+		return persistent;
 	}
 
 	public <T, P> IndexStatus write(Store<T> store, Batch<T, P> batch) throws InterruptedException {
@@ -55,34 +87,34 @@ public final class DefaultWriter extends AbstractWriter implements Writer {
 		if (batch == null) {
 			return null;
 		}
+		return writeAll(store, Collections.singletonList(batch));
+	}
+
+	public <T, P> IndexStatus writeAll(Store<T> store, List<Batch<T, P>> batches) throws InterruptedException {
+		Preconditions.checkNotNull(store, "A destination store must be provided.");
+		final List<Batch<T, P>> pending = pending(batches);
+		if (pending.isEmpty()) {
+			return null;
+		}
 		try {
-			final IndexWriterConfig config = config();
 			final T oldCP = store.getCheckpoint();
-			final T newCP = batch.getCheckpoint();
+			final T newCP = pending.get(pending.size() - 1).getCheckpoint();
 			if (Objects.equal(oldCP, newCP)) {
 				return null;
 			}
 			throwIfInterrupted();
-			if (!batch.isEmpty()) {
-				final Analyzer analyzer = config.getAnalyzer();
-				// Check whether the index must be created
+			if (!isEmpty(pending)) {
+				final boolean recreate = pending.get(0).isRecreate();
 				final Directory directory = store.getDirectory();
-				config.setOpenMode(batch.isRecreate() ? OpenMode.CREATE : OpenMode.CREATE_OR_APPEND);
-				final IndexWriter writer = new IndexWriter(directory, config);
+				final IndexWriter writer = open(directory, recreate);
+				final Analyzer analyzer = writer.getAnalyzer();
 				boolean ok = false;
 				try {
-					// Deletions
-					if (!batch.isRecreate()) {
-						for (Term term : batch.getDeletions()) {
-							throwIfInterrupted();
-							writer.deleteDocuments(term);
-						}
+					if (persistent && recreate) {
+						writer.deleteAll();
 					}
-					// Additions
-					for (Addition addition : batch.getAdditions()) {
-						throwIfInterrupted();
-						final Analyzer aa = addition.getAnalyzer();
-						writer.addDocument(addition.getDocument(), aa != null ? aa : analyzer);
+					for (Batch<T, P> batch : pending) {
+						apply(writer, batch, analyzer);
 					}
 					// Commit
 					throwIfInterrupted();
@@ -91,10 +123,7 @@ public final class DefaultWriter extends AbstractWriter implements Writer {
 					// No optimize until policy is defined.
 					// writer.optimize();
 				} finally {
-					if (!ok) {
-						rollback(writer);
-					}
-					writer.close();
+					release(directory, writer, ok);
 				}
 			}
 			store.setCheckpoint(newCP);
@@ -116,10 +145,107 @@ public final class DefaultWriter extends AbstractWriter implements Writer {
 		}
 	}
 
-	private void rollback(IndexWriter writer) {
+	/**
+	 * Opens an index writer or returns the cached one in persistent mode.
+	 * @param directory Index directory.
+	 * @param recreate Whether the index is going to be recreated.
+	 */
+	private IndexWriter open(Directory directory, boolean recreate) throws IOException {
+		if (!persistent) {
+			final IndexWriterConfig config = config();
+			// Check whether the index must be created
+			config.setOpenMode(recreate ? OpenMode.CREATE : OpenMode.CREATE_OR_APPEND);
+			return new IndexWriter(directory, config);
+		}
+		synchronized (writers) {
+			IndexWriter writer = writers.get(directory);
+			if (writer == null) {
+				final IndexWriterConfig config = config();
+				config.setOpenMode(OpenMode.CREATE_OR_APPEND);
+				writer = new IndexWriter(directory, config);
+				writers.put(directory, writer);
+			}
+			return writer;
+		}
+	}
+
+	/**
+	 * Releases an index writer after a batch. Failed writers are rolled back and, in persistent mode,
+	 * discarded so that a new one is opened for the next batch.
+	 * @param directory Index directory.
+	 * @param writer Index writer.
+	 * @param ok Whether the batch was successfully committed.
+	 */
+	private void release(Directory directory, IndexWriter writer, boolean ok) throws IOException {
+		if (!ok) {
+			rollback(writer);
+		}
+		if (persistent) {
+			if (ok) {
+				return;
+			}
+			synchronized (writers) {
+				if (writers.get(directory) == writer) {
+					writers.remove(directory);
+				}
+			}
+		}
+		writer.close();
+	}
+
+	/**
+	 * Closes the index writer kept open for a store, if any.
+	 * @param store Store which writer is to be closed.
+	 */
+	public void close(DirectoryProvider store) throws IOException {
+		final IndexWriter writer;
+		synchronized (writers) {
+			writer = writers.remove(store.getDirectory());
+		}
+		if (writer != null) {
+			writer.close();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.ServiceHook#idle(net.sf.lucis.core.DirectoryProvider)
+	 */
+	public void idle(DirectoryProvider store) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.ServiceHook#stopped(net.sf.lucis.core.DirectoryProvider)
+	 */
+	public void stopped(DirectoryProvider store) {
 		try {
-			writer.rollback();
-		} catch (Exception e) {
+			close(store);
+		} catch (IOException e) {
+			log().error(e, "Unable to close index writer");
+		}
+	}
+
+	/** Closes every index writer kept open. */
+	public void close() throws IOException {
+		final Map<Directory, IndexWriter> open;
+		synchronized (writers) {
+			open = Maps.newHashMap(writers);
+			writers.clear();
+		}
+		IOException first = null;
+		for (IndexWriter writer : open.values()) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				log().error(e, "Unable to close index writer");
+				if (first == null) {
+					first = e;
+				}
+			}
+		}
+		if (first != null) {
+			throw first;
 		}
 	}
 }
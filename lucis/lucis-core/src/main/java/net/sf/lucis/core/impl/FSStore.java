@@ -27,11 +27,12 @@ import java.io.IOException;
 
 import net.derquinse.common.io.DurableFiles;
 import net.sf.lucis.core.Checkpoint;
+import net.sf.lucis.core.DirectoryFactories;
+import net.sf.lucis.core.DirectoryFactory;
 import net.sf.lucis.core.Store;
 import net.sf.lucis.core.StoreException;
 
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 
 import com.google.common.io.ByteSource;
 
@@ -48,19 +49,30 @@ public class FSStore<T> extends AbstractStore implements Store<T> {
 	/** Control file. */
 	private final File control;
 	/** Index store. */
-	private final FSDirectory directory;
+	private final Directory directory;
 	/** Checkpoint serializer. */
 	private final Checkpoint<T> serializer;
 
 	public FSStore(final Checkpoint<T> serializer, final String indexDir) {
+		this(serializer, indexDir, DirectoryFactories.standard());
+	}
+
+	/**
+	 * Constructor.
+	 * @param serializer Checkpoint serializer.
+	 * @param indexDir Index directory, which must exist.
+	 * @param factory Factory used to open the index directory.
+	 */
+	public FSStore(final Checkpoint<T> serializer, final String indexDir, final DirectoryFactory factory) {
 		checkNotNull(serializer, "A checkpoint serializer must be provided.");
+		checkNotNull(factory, "A directory factory must be provided.");
 		this.serializer = serializer;
 		try {
 			this.file = new File(indexDir);
 			checkArgument(file.exists() && file.isDirectory(), "Invalid index directory");
 			this.control = new File(file, CONTROL_FILE);
 			checkArgument(!control.isDirectory(), "Control file cannot be a directory");
-			this.directory = FSDirectory.open(file);
+			this.directory = factory.open(file);
 		} catch (IOException e) {
 			throw new StoreException(e);
 		}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Scheduler shared by many indexing services. Delayed tasks are handled by a single timer thread
+ * and, once ready, run in a bounded worker pool. Ready tasks are executed by priority (lower values
+ * first) and in arrival order for the same priority. As each service has at most one pending task,
+ * the arrival order provides fairness among indexes. The number of tasks writing at the same time
+ * is bounded as well, with a separate bound for reindexing tasks so that a long reindex does not
+ * take a permit from incremental writers. Permits are never waited for: tasks that cannot obtain
+ * one are rescheduled after {@link #RETRY_DELAY} milliseconds, releasing the worker thread.
+ * @author Andres Rodriguez
+ */
+@ThreadSafe
+public final class IndexingScheduler {
+	/** Default priority for incremental indexing tasks. */
+	public static final int INCREMENTAL_PRIORITY = 0;
+	/** Default priority for reindexing tasks. */
+	public static final int REINDEXING_PRIORITY = 10;
+	/** Delay in milliseconds before retrying a task that could not obtain a writer permit. */
+	public static final long RETRY_DELAY = 100L;
+
+	/** Timer for delayed tasks. */
+	private final ScheduledExecutorService timer;
+	/** Worker pool. */
+	private final ThreadPoolExecutor workers;
+	/** Maximum number of concurrent writers. */
+	private final int maxWriters;
+	/** Writer permits. */
+	private final Semaphore writers;
+	/** Maximum number of concurrent reindexing tasks. */
+	private final int maxReindexers;
+	/** Reindexing permits. */
+	private final Semaphore reindexers;
+	/** Sequence for the arrival order. */
+	private final AtomicLong sequence = new AtomicLong();
+	/** Number of tasks waiting for its delay. */
+	private final AtomicInteger delayed = new AtomicInteger();
+
+	/**
+	 * Constructor. Reindexing tasks are allowed to use all the worker threads but one.
+	 * @param threads Number of worker threads.
+	 * @param maxWriters Maximum number of concurrent incremental writers.
+	 */
+	public IndexingScheduler(int threads, int maxWriters) {
+		this(threads, maxWriters, Math.max(1, threads - 1));
+	}
+
+	/**
+	 * Constructor.
+	 * @param threads Number of worker threads.
+	 * @param maxWriters Maximum number of concurrent incremental writers.
+	 * @param maxReindexers Maximum number of concurrent reindexing tasks.
+	 */
+	public IndexingScheduler(int threads, int maxWriters, int maxReindexers) {
+		checkArgument(threads > 0, "The number of threads must be positive");
+		checkArgument(maxWriters > 0, "The maximum number of writers must be positive");
+		checkArgument(maxReindexers > 0, "The maximum number of reindexers must be positive");
+		this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("lucis-scheduler-timer").setDaemon(true).build());
+		this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new PriorityBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setNameFormat("lucis-scheduler-%d")
+						.setDaemon(true).build());
+		this.maxWriters = maxWriters;
+		this.writers = new Semaphore(maxWriters, true);
+		this.maxReindexers = maxReindexers;
+		this.reindexers = new Semaphore(maxReindexers, true);
+	}
+
+	/**
+	 * Schedules a task.
+	 * @param task Task to run.
+	 * @param priority Task priority (lower values first).
+	 * @param delay Delay in milliseconds.
+	 * @throws RejectedExecutionException if the scheduler has been shut down.
+	 */
+	void schedule(final Runnable task, final int priority, long delay) {
+		if (delay <= 0L) {
+			workers.execute(new Prioritized(task, priority, sequence.getAndIncrement()));
+			return;
+		}
+		delayed.incrementAndGet();
+		timer.schedule(new Runnable() {
+			public void run() {
+				delayed.decrementAndGet();
+				workers.execute(new Prioritized(task, priority, sequence.getAndIncrement()));
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/** Returns the permits to use. */
+	private Semaphore permits(boolean reindexing) {
+		return reindexing ? reindexers : writers;
+	}
+
+	/**
+	 * Acquires a writer permit if one is available, without waiting.
+	 * @param reindexing Whether the permit is requested by a reindexing task.
+	 * @return Whether the permit has been acquired.
+	 */
+	boolean tryAcquireWriter(boolean reindexing) {
+		return permits(reindexing).tryAcquire();
+	}
+
+	/**
+	 * Releases a writer permit.
+	 * @param reindexing Whether the permit was acquired by a reindexing task.
+	 */
+	void releaseWriter(boolean reindexing) {
+		permits(reindexing).release();
+	}
+
+	/** Returns the number of worker threads. */
+	public int getThreads() {
+		return workers.getMaximumPoolSize();
+	}
+
+	/** Returns the maximum number of concurrent incremental writers. */
+	public int getMaxWriters() {
+		return maxWriters;
+	}
+
+	/** Returns the maximum number of concurrent reindexing tasks. */
+	public int getMaxReindexers() {
+		return maxReindexers;
+	}
+
+	/** Returns the number of ready tasks waiting for a worker. */
+	public int getQueueSize() {
+		return workers.getQueue().size();
+	}
+
+	/** Returns the number of tasks waiting for their delay. */
+	public int getDelayedTasks() {
+		return delayed.get();
+	}
+
+	/** Returns the approximate number of running tasks. */
+	public int getActiveTasks() {
+		return workers.getActiveCount();
+	}
+
+	/** Returns the approximate number of completed tasks. */
+	public long getCompletedTasks() {
+		return workers.getCompletedTaskCount();
+	}
+
+	/** Returns the number of incremental tasks currently writing. */
+	public int getActiveWriters() {
+		return maxWriters - writers.availablePermits();
+	}
+
+	/** Returns the number of reindexing tasks currently running. */
+	public int getActiveReindexers() {
+		return maxReindexers - reindexers.availablePermits();
+	}
+
+	/** Shuts down the scheduler, interrupting the running tasks. */
+	public void shutdown() {
+		timer.shutdownNow();
+		workers.shutdownNow();
+	}
+
+	/** Prioritized task. */
+	private static final class Prioritized implements Runnable, Comparable<Prioritized> {
+		private final Runnable task;
+		private final int priority;
+		private final long sequence;
+
+		Prioritized(Runnable task, int priority, long sequence) {
+			this.task = task;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		public void run() {
+			task.run();
+		}
+
+		public int compareTo(Prioritized o) {
+			if (priority != o.priority) {
+				return priority < o.priority ? -1 : 1;
+			}
+			return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+		}
+	}
+
+}
@@ -17,7 +17,13 @@ package net.sf.lucis.core.impl;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 
 import net.sf.derquinse.lucis.IndexNotAvailableException;
 import net.sf.lucis.core.DirectoryProvider;
@@ -25,29 +31,87 @@ import net.sf.lucis.core.LucisSearcher;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
 
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 /**
- * MultiSearcher managed implementation.
+ * MultiSearcher managed implementation. The multi reader and its index searcher are shared while
+ * the readers published by the stores do not change, so each searcher is just a lease on the multi
+ * reader and per-reader caches keep working across queries. Published readers are checked in
+ * memory, without touching the index. When some store has changed, or its reader has to be checked
+ * for changes, the managed readers are requested again and the multi reader is only rebuilt if some
+ * of them has changed. Providers that are not stores of this package are always requested. If an
+ * executor is provided, top hits searches are performed in parallel over the segments of every
+ * store.
  * @author Andres Rodriguez
  */
 public final class ManagedMultiSearcherProvider implements Supplier<LucisSearcher> {
 	private final ImmutableList<DirectoryProvider> providers;
+	/** Executor for parallel searches, if any. */
+	private final ExecutorService executor;
+	/** Shared multi reader, the provider holds a reference to it. */
+	@GuardedBy("this")
+	private Shared shared = null;
 
 	public static ManagedMultiSearcherProvider of(Iterable<DirectoryProvider> providers) {
-		return new ManagedMultiSearcherProvider(providers);
+		return new ManagedMultiSearcherProvider(providers, null);
+	}
+
+	/**
+	 * Returns a provider that searches the stores in parallel.
+	 * @param providers Directory providers.
+	 * @param executor Executor for parallel searches, if any.
+	 */
+	public static ManagedMultiSearcherProvider of(Iterable<DirectoryProvider> providers,
+			@Nullable ExecutorService executor) {
+		return new ManagedMultiSearcherProvider(providers, executor);
 	}
 
-	private ManagedMultiSearcherProvider(Iterable<DirectoryProvider> providers) {
+	private ManagedMultiSearcherProvider(Iterable<DirectoryProvider> providers, ExecutorService executor) {
 		this.providers = ImmutableList.copyOf(checkNotNull(providers, "The directory providers are mandatory."));
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns the readers published by the providers or {@code null} if some of them has to be
+	 * requested.
+	 */
+	private List<IndexReader> published() {
+		final IndexReader[] readers = new IndexReader[providers.size()];
+		for (int i = 0; i < readers.length; i++) {
+			final DirectoryProvider p = providers.get(i);
+			if (!(p instanceof AbstractStore)) {
+				return null;
+			}
+			readers[i] = ((AbstractStore) p).getPublishedReader();
+			if (readers[i] == null) {
+				return null;
+			}
+		}
+		return Arrays.asList(readers);
+	}
+
+	/**
+	 * Returns the shared multi reader, with a reference acquired, if the published readers have not
+	 * changed.
+	 */
+	private synchronized Shared current(@Nullable List<IndexReader> published) {
+		if (published != null && shared != null && shared.matches(published) && shared.reader.tryIncRef()) {
+			return shared;
+		}
+		return null;
 	}
 
 	public LucisSearcher get() {
+		final Shared current = current(published());
+		if (current != null) {
+			return new DefaultLucisSearcher(current.reader, current.searcher, null);
+		}
+		List<IndexReader> readers = Lists.newArrayListWithCapacity(providers.size());
 		try {
-			List<IndexReader> readers = Lists.newArrayListWithCapacity(providers.size());
 			for (DirectoryProvider p : providers) {
 				readers.add(p.getManagedReader());
 			}
@@ -55,9 +119,61 @@ public final class ManagedMultiSearcherProvider implements Supplier<LucisSearche
 				final IndexReader reader = IndexReader.open(EmptyDirectory.get());
 				readers.add(reader);
 			}
-			return new DefaultLucisSearcher(new MultiReader(readers.toArray(new IndexReader[readers.size()])));
+			final Shared s = lease(readers);
+			return new DefaultLucisSearcher(s.reader, s.searcher, null);
 		} catch (Exception e) {
 			throw new IndexNotAvailableException(e);
+		} finally {
+			// The multi reader holds its own references.
+			for (IndexReader reader : readers) {
+				try {
+					reader.decRef();
+				} catch (IOException e) {
+					// Nothing to do.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the shared multi reader for the provided sub-readers, with a reference acquired. It is
+	 * only rebuilt if some sub-reader has changed.
+	 */
+	private synchronized Shared lease(List<IndexReader> readers) throws IOException {
+		if (shared != null && shared.matches(readers) && shared.reader.tryIncRef()) {
+			return shared;
+		}
+		final Shared s = new Shared(readers, executor);
+		s.reader.incRef();
+		if (shared != null) {
+			shared.reader.decRef();
+		}
+		shared = s;
+		return s;
+	}
+
+	/** Multi reader shared by the leases. */
+	private static final class Shared {
+		final ImmutableList<IndexReader> subReaders;
+		final IndexReader reader;
+		final IndexSearcher searcher;
+
+		Shared(List<IndexReader> readers, ExecutorService executor) {
+			this.subReaders = ImmutableList.copyOf(readers);
+			this.reader = new MultiReader(readers.toArray(new IndexReader[readers.size()]), false);
+			this.searcher = DefaultLucisSearcher.newSearcher(reader, executor);
+		}
+
+		boolean matches(List<IndexReader> readers) {
+			if (readers.size() != subReaders.size()) {
+				return false;
+			}
+			for (int i = 0; i < readers.size(); i++) {
+				if (readers.get(i) != subReaders.get(i)) {
+					return false;
+				}
+			}
+			return true;
 		}
 	}
 
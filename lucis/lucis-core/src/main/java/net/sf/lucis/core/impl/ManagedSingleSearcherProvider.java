@@ -16,29 +16,85 @@
 package net.sf.lucis.core.impl;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+
 import net.sf.derquinse.lucis.IndexNotAvailableException;
 import net.sf.lucis.core.DirectoryProvider;
 import net.sf.lucis.core.LucisSearcher;
 
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+
 import com.google.common.base.Supplier;
 
+/**
+ * Managed single searcher provider. The index searcher is shared by every searcher on the same
+ * managed reader, so each searcher is just a lease on the reader. The shared searcher is dropped
+ * once the last reference to its reader is released, so that a reader the store has moved on
+ * from is not kept until the next lease.
+ * @author Andres Rodriguez
+ */
 public final class ManagedSingleSearcherProvider implements Supplier<LucisSearcher> {
 	private final DirectoryProvider provider;
+	/** Executor for parallel searches, if any. */
+	private final ExecutorService executor;
+	/** Searcher for the last reader. */
+	private final AtomicReference<Shared> shared = new AtomicReference<Shared>();
 
 	public static ManagedSingleSearcherProvider of(DirectoryProvider provider) {
-		return new ManagedSingleSearcherProvider(provider);
+		return new ManagedSingleSearcherProvider(provider, null);
+	}
+
+	/**
+	 * Returns a provider whose searchers search the segments of the index in parallel.
+	 * @param provider Directory provider.
+	 * @param executor Executor for parallel searches, if any.
+	 */
+	public static ManagedSingleSearcherProvider of(DirectoryProvider provider, @Nullable ExecutorService executor) {
+		return new ManagedSingleSearcherProvider(provider, executor);
 	}
 
-	private ManagedSingleSearcherProvider(DirectoryProvider provider) {
+	private ManagedSingleSearcherProvider(DirectoryProvider provider, ExecutorService executor) {
 		this.provider = checkNotNull(provider, "The directory provider is mandatory.");
+		this.executor = executor;
 	}
 
 	public LucisSearcher get() {
 		try {
-			return new DefaultLucisSearcher(provider.getManagedReader());
+			final IndexReader reader = provider.getManagedReader();
+			Shared s = shared.get();
+			if (s == null || s.reader != reader) {
+				s = new Shared(reader, executor);
+				shared.set(s);
+			}
+			return new DefaultLucisSearcher(reader, s.searcher, s);
 		} catch (Exception e) {
 			throw new IndexNotAvailableException(e);
 		}
 	}
 
+	/**
+	 * Index searcher shared by the leases on a reader. Run when a lease is closed, it drops itself
+	 * from the cache if the reader has been released by every holder, including the store.
+	 */
+	private final class Shared implements Runnable {
+		final IndexReader reader;
+		final IndexSearcher searcher;
+
+		Shared(IndexReader reader, ExecutorService executor) {
+			this.reader = reader;
+			this.searcher = DefaultLucisSearcher.newSearcher(reader, executor);
+		}
+
+		public void run() {
+			if (reader.getRefCount() == 0) {
+				shared.compareAndSet(this, null);
+			}
+		}
+	}
+
 }
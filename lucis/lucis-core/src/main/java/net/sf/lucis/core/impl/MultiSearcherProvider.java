@@ -18,6 +18,9 @@ package net.sf.lucis.core.impl;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.Nullable;
 
 import net.sf.derquinse.lucis.IndexNotAvailableException;
 import net.sf.lucis.core.DirectoryProvider;
@@ -37,13 +40,26 @@ import com.google.common.collect.Lists;
  */
 public final class MultiSearcherProvider implements Supplier<LucisSearcher> {
 	private final ImmutableList<DirectoryProvider> providers;
+	/** Executor for parallel searches, if any. */
+	private final ExecutorService executor;
 
 	public static MultiSearcherProvider of(Iterable<DirectoryProvider> providers) {
-		return new MultiSearcherProvider(providers);
+		return new MultiSearcherProvider(providers, null);
+	}
+
+	/**
+	 * Returns a provider that searches the stores in parallel. Top hits searches are performed in
+	 * parallel over the segments of every store.
+	 * @param providers Directory providers.
+	 * @param executor Executor for parallel searches, if any.
+	 */
+	public static MultiSearcherProvider of(Iterable<DirectoryProvider> providers, @Nullable ExecutorService executor) {
+		return new MultiSearcherProvider(providers, executor);
 	}
 
-	private MultiSearcherProvider(Iterable<DirectoryProvider> providers) {
+	private MultiSearcherProvider(Iterable<DirectoryProvider> providers, ExecutorService executor) {
 		this.providers = ImmutableList.copyOf(checkNotNull(providers, "The directory providers are mandatory."));
+		this.executor = executor;
 	}
 
 	public LucisSearcher get() {
@@ -59,7 +75,7 @@ public final class MultiSearcherProvider implements Supplier<LucisSearcher> {
 				final IndexReader reader = IndexReader.open(EmptyDirectory.get());
 				readers.add(reader);
 			}
-			return new DefaultLucisSearcher(new MultiReader(readers.toArray(new IndexReader[readers.size()])));
+			return new DefaultLucisSearcher(new MultiReader(readers.toArray(new IndexReader[readers.size()])), executor);
 		} catch (Exception e) {
 			throw new IndexNotAvailableException(e);
 		}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import net.sf.lucis.core.DeferredCommit;
+import net.sf.lucis.core.DirectoryProvider;
+import net.sf.lucis.core.Factory;
+import net.sf.lucis.core.ServiceHook;
+import net.sf.lucis.core.Store;
+import net.sf.lucis.core.StoreException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.store.Directory;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Near-real-time store. Wraps a durable store keeping a long-lived index writer open on its
+ * directory. Managed readers are obtained from the writer, so written batches become searchable
+ * without committing. Commits are a separate durability step: the changes and the checkpoint are
+ * persisted in the durable store when the commit delay has elapsed, when {@link #commit()} is
+ * called or when the store is closed. Tasks waiting for the written changes to be durable are run
+ * after the commit and discarded if the changes are rolled back. Must be used with a
+ * {@link NRTWriter}. Indexer services commit the pending changes when they are idle, if the delay
+ * has elapsed, and when they are stopped.
+ * @author Andres Rodriguez
+ * @param <T> Checkpoint type.
+ */
+public class NRTStore<T> extends AbstractStore implements Store<T>, DeferredCommit, ServiceHook, Closeable {
+	/** Durable store. */
+	private final Store<T> store;
+	/** Writer configuration. */
+	private final Supplier<IndexWriterConfig> config;
+	/** Writer lock. */
+	private final Lock lock = new ReentrantLock();
+	/**
+	 * Readers are opened from the writer holding the read lock, without the writer lock, so that
+	 * flushing the segments does not block writes and commits. Closing or rolling back the writer
+	 * requires the write lock.
+	 */
+	private final ReadWriteLock opening = new ReentrantReadWriteLock();
+	/** Index writer. */
+	@GuardedBy("lock")
+	private IndexWriter writer;
+	/** Whether there are uncommitted changes. */
+	@GuardedBy("lock")
+	private boolean dirty = false;
+	/** Time since the first uncommitted change. */
+	@GuardedBy("lock")
+	private final Stopwatch watch = Stopwatch.createUnstarted();
+	/** Tasks to run after the next commit. */
+	@GuardedBy("lock")
+	private final List<Runnable> afterCommit = Lists.newArrayList();
+	/** Current (possibly uncommitted) checkpoint. */
+	private volatile T checkpoint;
+	/** Maximum time in ms between commits. If not positive, every batch is committed. */
+	private volatile long commitDelay = 5000L;
+	/** Whether to apply deletions when opening readers. */
+	private volatile boolean applyDeletes = true;
+
+	public NRTStore(Store<T> store, Supplier<IndexWriterConfig> config) {
+		this.store = checkNotNull(store, "A durable store must be provided.");
+		this.config = checkNotNull(config, "A writer configuration supplier must be provided");
+		this.checkpoint = store.getCheckpoint();
+	}
+
+	public NRTStore(Store<T> store) {
+		this(store, Factory.get().writerConfigSupplier());
+	}
+
+	/* CONFIGURABLE PROPERTIES */
+
+	public void setCommitDelay(long commitDelay) {
+		this.commitDelay = commitDelay;
+	}
+
+	public void setApplyDeletes(boolean applyDeletes) {
+		this.applyDeletes = applyDeletes;
+	}
+
+	/* END CONFIGURABLE PROPERTIES. */
+
+	/** Returns the durable store. */
+	public Store<T> getStore() {
+		return store;
+	}
+
+	public Directory getDirectory() {
+		return store.getDirectory();
+	}
+
+	/** Returns the current checkpoint, which may not have been committed yet. */
+	public T getCheckpoint() {
+		return checkpoint;
+	}
+
+	public Object getVersion() {
+		return checkpoint;
+	}
+
+	/** Sets the current checkpoint, committing every pending change. */
+	public void setCheckpoint(T checkpoint) {
+		checkNotNull(checkpoint, "A checkpoint must be provided.");
+		final List<Runnable> tasks;
+		lock.lock();
+		try {
+			this.checkpoint = checkpoint;
+			dirty = true;
+			tasks = commitLocked();
+		} finally {
+			lock.unlock();
+		}
+		run(tasks);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.DeferredCommit#afterCommit(java.lang.Runnable)
+	 */
+	public void afterCommit(Runnable task) {
+		checkNotNull(task, "The task must be provided");
+		lock.lock();
+		try {
+			if (dirty) {
+				afterCommit.add(task);
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+		run(ImmutableList.of(task));
+	}
+
+	/** Returns the index writer, opening it if needed. */
+	IndexWriter getIndexWriter() throws IOException {
+		lock.lock();
+		try {
+			return writer();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@GuardedBy("lock")
+	private IndexWriter writer() throws IOException {
+		if (writer == null) {
+			final Directory directory = store.getDirectory();
+			final boolean exists = IndexReader.indexExists(directory);
+			final IndexWriterConfig c = checkNotNull(config.get(), "Null writer config provider");
+			c.setOpenMode(OpenMode.CREATE_OR_APPEND);
+			final IndexWriter w = new IndexWriter(directory, c);
+			if (!exists) {
+				// Readers need an existing commit point.
+				w.commit();
+			}
+			writer = w;
+		}
+		return writer;
+	}
+
+	/**
+	 * Called by the writer when a batch has been applied. Sets the new in-memory checkpoint and
+	 * commits if the commit delay has elapsed.
+	 * @param newCheckpoint New checkpoint.
+	 */
+	void advance(T newCheckpoint) {
+		List<Runnable> tasks = ImmutableList.of();
+		lock.lock();
+		try {
+			this.checkpoint = newCheckpoint;
+			if (!dirty) {
+				watch.reset().start();
+			}
+			dirty = true;
+			changed();
+			final long delay = commitDelay;
+			if (delay <= 0 || watch.elapsed(TimeUnit.MILLISECONDS) >= delay) {
+				tasks = commitLocked();
+			}
+		} finally {
+			lock.unlock();
+		}
+		run(tasks);
+	}
+
+	/** Commits the pending changes if the commit delay has elapsed. */
+	public void maybeCommit() {
+		List<Runnable> tasks = ImmutableList.of();
+		lock.lock();
+		try {
+			if (dirty && watch.elapsed(TimeUnit.MILLISECONDS) >= commitDelay) {
+				tasks = commitLocked();
+			}
+		} finally {
+			lock.unlock();
+		}
+		run(tasks);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.ServiceHook#idle(net.sf.lucis.core.DirectoryProvider)
+	 */
+	public void idle(DirectoryProvider store) {
+		maybeCommit();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.ServiceHook#stopped(net.sf.lucis.core.DirectoryProvider)
+	 */
+	public void stopped(DirectoryProvider store) {
+		commit();
+	}
+
+	/**
+	 * Commits the pending changes and persists the current checkpoint in the durable store.
+	 * @throws StoreException if an error occurs.
+	 */
+	public void commit() {
+		final List<Runnable> tasks;
+		lock.lock();
+		try {
+			tasks = commitLocked();
+		} finally {
+			lock.unlock();
+		}
+		run(tasks);
+	}
+
+	/**
+	 * Commits the pending changes. Must be called holding the lock.
+	 * @return The tasks to run, once the lock has been released, after the commit.
+	 * @throws StoreException if an error occurs.
+	 */
+	@GuardedBy("lock")
+	private List<Runnable> commitLocked() {
+		if (!dirty) {
+			return ImmutableList.of();
+		}
+		try {
+			if (writer != null) {
+				writer.commit();
+			}
+		} catch (IOException e) {
+			throw new StoreException(e);
+		}
+		store.setCheckpoint(checkpoint);
+		dirty = false;
+		watch.reset();
+		final List<Runnable> tasks = ImmutableList.copyOf(afterCommit);
+		afterCommit.clear();
+		return tasks;
+	}
+
+	/** Runs the tasks waiting for a commit. */
+	private void run(List<Runnable> tasks) {
+		for (Runnable task : tasks) {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				log().error(e, "Error running after commit task");
+			}
+		}
+	}
+
+	/**
+	 * Discards every uncommitted change, restoring the checkpoint of the durable store. The writer is
+	 * closed by the rollback so a new one will be opened when needed.
+	 */
+	void rollback() {
+		opening.writeLock().lock();
+		lock.lock();
+		try {
+			if (writer != null) {
+				try {
+					writer.rollback();
+				} catch (IOException e) {
+					log().error(e, "Unable to rollback index writer");
+				}
+				writer = null;
+			}
+			checkpoint = store.getCheckpoint();
+			dirty = false;
+			watch.reset();
+			// The changes these tasks were waiting for are gone.
+			afterCommit.clear();
+			changed();
+		} finally {
+			lock.unlock();
+			opening.writeLock().unlock();
+		}
+	}
+
+	/** Commits the pending changes and closes the index writer. */
+	public void close() throws IOException {
+		final List<Runnable> tasks;
+		opening.writeLock().lock();
+		lock.lock();
+		try {
+			tasks = commitLocked();
+			if (writer != null) {
+				final IndexWriter w = writer;
+				writer = null;
+				w.close();
+			}
+		} finally {
+			lock.unlock();
+			opening.writeLock().unlock();
+		}
+		run(tasks);
+	}
+
+	@Override
+	IndexReader openReader(Directory directory) throws IOException {
+		opening.readLock().lock();
+		try {
+			return IndexReader.open(getIndexWriter(), applyDeletes);
+		} finally {
+			opening.readLock().unlock();
+		}
+	}
+
+	@Override
+	IndexReader reopenReader(IndexReader reader) throws IOException {
+		opening.readLock().lock();
+		try {
+			return IndexReader.openIfChanged(reader, getIndexWriter(), applyDeletes);
+		} finally {
+			opening.readLock().unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "NRTStore[" + store + "]";
+	}
+
+}
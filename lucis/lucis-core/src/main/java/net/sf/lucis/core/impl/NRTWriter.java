@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static net.sf.lucis.core.Interruption.throwIfInterrupted;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.lucis.core.Batch;
+import net.sf.lucis.core.GroupCommitWriter;
+import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.Store;
+
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.LockObtainFailedException;
+
+import com.google.common.base.Objects;
+
+/**
+ * Near-real-time writer implementation. Applies the batches to the long-lived index writer of a
+ * {@link NRTStore} without committing. Durability is handled by the store.
+ * @author Andres Rodriguez.
+ */
+public final class NRTWriter extends AbstractWriter implements GroupCommitWriter {
+	public NRTWriter() {
+	}
+
+	public <T, P> IndexStatus write(Store<T> store, Batch<T, P> batch) throws InterruptedException {
+		checkNotNull(store, "A destination store must be provided.");
+		if (batch == null) {
+			return null;
+		}
+		return writeAll(store, Collections.singletonList(batch));
+	}
+
+	public <T, P> IndexStatus writeAll(Store<T> store, List<Batch<T, P>> batches) throws InterruptedException {
+		checkNotNull(store, "A destination store must be provided.");
+		checkArgument(store instanceof NRTStore, "The destination store must be a near-real-time store.");
+		final List<Batch<T, P>> pending = pending(batches);
+		if (pending.isEmpty()) {
+			return null;
+		}
+		final NRTStore<T> nrt = (NRTStore<T>) store;
+		try {
+			final T oldCP = nrt.getCheckpoint();
+			final T newCP = pending.get(pending.size() - 1).getCheckpoint();
+			if (Objects.equal(oldCP, newCP)) {
+				return null;
+			}
+			throwIfInterrupted();
+			final boolean recreate = pending.get(0).isRecreate();
+			if (!isEmpty(pending) || recreate) {
+				final IndexWriter writer = nrt.getIndexWriter();
+				boolean ok = false;
+				try {
+					if (recreate) {
+						writer.deleteAll();
+					}
+					for (Batch<T, P> batch : pending) {
+						apply(writer, batch, writer.getAnalyzer());
+					}
+					ok = true;
+				} finally {
+					if (!ok) {
+						nrt.rollback();
+					}
+				}
+			}
+			nrt.advance(newCP);
+			return IndexStatus.OK;
+		} catch (InterruptedException ie) {
+			throw ie;
+		} catch (LockObtainFailedException le) {
+			log().error(le, "Unable to lock index");
+			return IndexStatus.LOCKED;
+		} catch (CorruptIndexException ce) {
+			log().error(ce, "Corrupt index");
+			return IndexStatus.CORRUPT;
+		} catch (IOException ioe) {
+			log().error(ioe, "I/O Error while writing");
+			return IndexStatus.IOERROR;
+		} catch (Exception e) {
+			log().error(e, "Exception while writing");
+			return IndexStatus.ERROR;
+		}
+	}
+
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lucene.index.IndexFileNameFilter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.SingleInstanceLockFactory;
+
+import com.google.common.collect.Maps;
+
+/**
+ * In-memory directory that keeps the contents of the files in direct byte buffers, outside the Java
+ * heap. Files are stored in fixed-size blocks, except the last one of each file, which is trimmed
+ * when the file is closed. The memory of a deleted file is released when its buffers (including
+ * those of any open input) are garbage collected, so the maximum direct memory of the JVM must be
+ * sized for the index plus some slack.
+ * @author Andres Rodriguez
+ */
+final class OffHeapDirectory extends Directory {
+	/** Default block size (1 MB). */
+	static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+	/** Empty buffer. */
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+	/** Block size shift. */
+	private final int shift;
+	/** Block size mask. */
+	private final long mask;
+	/** Files. */
+	private final ConcurrentMap<String, OffHeapFile> files = Maps.newConcurrentMap();
+
+	/**
+	 * Constructor.
+	 * @param blockSize Block size in bytes, must be a power of two.
+	 */
+	OffHeapDirectory(int blockSize) {
+		checkArgument(blockSize > 0 && Integer.bitCount(blockSize) == 1, "The block size must be a power of two");
+		this.shift = Integer.numberOfTrailingZeros(blockSize);
+		this.mask = blockSize - 1;
+		try {
+			setLockFactory(new SingleInstanceLockFactory());
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/** Constructor with the default block size. */
+	OffHeapDirectory() {
+		this(DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a new directory with a copy of the index files of another one.
+	 * @param source Source directory.
+	 */
+	OffHeapDirectory(Directory source) throws IOException {
+		this();
+		final IndexFileNameFilter filter = IndexFileNameFilter.getFilter();
+		for (String name : source.listAll()) {
+			if (filter.accept(null, name)) {
+				source.copy(this, name, name);
+			}
+		}
+	}
+
+	private OffHeapFile file(String name) throws IOException {
+		ensureOpen();
+		final OffHeapFile file = files.get(name);
+		if (file == null) {
+			throw new FileNotFoundException(name);
+		}
+		return file;
+	}
+
+	@Override
+	public String[] listAll() throws IOException {
+		ensureOpen();
+		return files.keySet().toArray(new String[0]);
+	}
+
+	@Override
+	public boolean fileExists(String name) throws IOException {
+		ensureOpen();
+		return files.containsKey(name);
+	}
+
+	@Override
+	public long fileModified(String name) throws IOException {
+		return file(name).modified;
+	}
+
+	@Override
+	@Deprecated
+	public void touchFile(String name) throws IOException {
+		file(name).modified = System.currentTimeMillis();
+	}
+
+	@Override
+	public void deleteFile(String name) throws IOException {
+		ensureOpen();
+		if (files.remove(name) == null) {
+			throw new FileNotFoundException(name);
+		}
+	}
+
+	@Override
+	public long fileLength(String name) throws IOException {
+		return file(name).contents.length;
+	}
+
+	@Override
+	public IndexOutput createOutput(String name) throws IOException {
+		ensureOpen();
+		final OffHeapFile file = new OffHeapFile();
+		files.put(name, file);
+		return new Output(file);
+	}
+
+	@Override
+	public IndexInput openInput(String name) throws IOException {
+		final Contents contents = file(name).contents;
+		return new Input(name, contents.blocks, contents.length);
+	}
+
+	/** Returns the number of bytes allocated by the current files. */
+	long sizeInBytes() {
+		long size = 0L;
+		for (OffHeapFile file : files.values()) {
+			for (ByteBuffer block : file.contents.blocks) {
+				size += block.capacity();
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public void close() throws IOException {
+		isOpen = false;
+		files.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "OffHeapDirectory@" + Integer.toHexString(hashCode());
+	}
+
+	/**
+	 * Off-heap file. Files are written once, the blocks and the length are published together when
+	 * the output is closed.
+	 */
+	private static final class OffHeapFile {
+		/** Published contents. */
+		volatile Contents contents = Contents.EMPTY;
+		/** Last modification time. */
+		volatile long modified = System.currentTimeMillis();
+	}
+
+	/** Contents of a file. */
+	private static final class Contents {
+		/** Empty contents. */
+		static final Contents EMPTY = new Contents(new ByteBuffer[0], 0L);
+
+		/** Read-only blocks. */
+		final ByteBuffer[] blocks;
+		/** Length in bytes. */
+		final long length;
+
+		Contents(ByteBuffer[] blocks, long length) {
+			this.blocks = blocks;
+			this.length = length;
+		}
+	}
+
+	/** Output. */
+	private final class Output extends IndexOutput {
+		private final OffHeapFile file;
+		/** Blocks. */
+		private ByteBuffer[] blocks = new ByteBuffer[4];
+		/** Number of allocated blocks. */
+		private int count = 0;
+		/** Index of the current block. */
+		private int index = -1;
+		/** Current block. */
+		private ByteBuffer current = EMPTY;
+		/** Length. */
+		private long length = 0L;
+		/** Whether the output is closed. */
+		private boolean closed = false;
+
+		Output(OffHeapFile file) {
+			this.file = file;
+		}
+
+		/** Moves to the next block, allocating it if needed. */
+		private void next() {
+			index++;
+			if (index == count) {
+				if (count == blocks.length) {
+					blocks = Arrays.copyOf(blocks, count * 2);
+				}
+				blocks[count++] = ByteBuffer.allocateDirect(1 << shift);
+			}
+			current = blocks[index];
+			current.position(0);
+		}
+
+		@Override
+		public void writeByte(byte b) throws IOException {
+			if (!current.hasRemaining()) {
+				next();
+			}
+			current.put(b);
+		}
+
+		@Override
+		public void writeBytes(byte[] b, int offset, int len) throws IOException {
+			while (len > 0) {
+				if (!current.hasRemaining()) {
+					next();
+				}
+				final int n = Math.min(len, current.remaining());
+				current.put(b, offset, n);
+				offset += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public long getFilePointer() {
+			return index < 0 ? 0L : ((long) index << shift) + current.position();
+		}
+
+		private void updateLength() {
+			length = Math.max(length, getFilePointer());
+		}
+
+		@Override
+		@Deprecated
+		public void seek(long pos) throws IOException {
+			updateLength();
+			if (pos < 0 || pos > length) {
+				throw new IOException("Seek out of bounds: " + pos);
+			}
+			if (pos == 0L) {
+				index = -1;
+				current = EMPTY;
+				return;
+			}
+			// Positions at a block boundary stay at the end of the previous block.
+			index = (int) ((pos - 1) >>> shift);
+			current = blocks[index];
+			current.position((int) (pos - ((long) index << shift)));
+		}
+
+		@Override
+		public long length() throws IOException {
+			return Math.max(length, getFilePointer());
+		}
+
+		@Override
+		public void flush() throws IOException {
+			updateLength();
+			file.modified = System.currentTimeMillis();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			flush();
+			final int n = (int) ((length + mask) >>> shift);
+			final ByteBuffer[] published = new ByteBuffer[n];
+			for (int i = 0; i < n; i++) {
+				ByteBuffer block = blocks[i];
+				final int used = (int) Math.min(mask + 1, length - ((long) i << shift));
+				if (used < block.capacity()) {
+					// Trim the last block.
+					final ByteBuffer trimmed = ByteBuffer.allocateDirect(used);
+					final ByteBuffer source = block.duplicate();
+					source.position(0).limit(used);
+					trimmed.put(source);
+					block = trimmed;
+				}
+				block.clear();
+				published[i] = block.asReadOnlyBuffer();
+			}
+			blocks = null;
+			current = EMPTY;
+			file.contents = new Contents(published, length);
+		}
+	}
+
+	/** Input. */
+	private final class Input extends IndexInput {
+		private final ByteBuffer[] blocks;
+		private final long length;
+		/** Index of the current block. */
+		private int index;
+		/** Current block. */
+		private ByteBuffer current;
+
+		Input(String name, ByteBuffer[] blocks, long length) {
+			super("OffHeapDirectory.Input(" + name + ")");
+			this.blocks = blocks;
+			this.length = length;
+			this.index = -1;
+			this.current = EMPTY;
+		}
+
+		/** Moves to the next block. */
+		private void next() throws IOException {
+			if (index + 1 >= blocks.length) {
+				throw new EOFException("Read past EOF: " + this);
+			}
+			index++;
+			current = blocks[index].duplicate();
+		}
+
+		@Override
+		public byte readByte() throws IOException {
+			if (!current.hasRemaining()) {
+				next();
+			}
+			return current.get();
+		}
+
+		@Override
+		public void readBytes(byte[] b, int offset, int len) throws IOException {
+			while (len > 0) {
+				if (!current.hasRemaining()) {
+					next();
+				}
+				final int n = Math.min(len, current.remaining());
+				current.get(b, offset, n);
+				offset += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public long getFilePointer() {
+			return index < 0 ? 0L : ((long) index << shift) + current.position();
+		}
+
+		@Override
+		public void seek(long pos) throws IOException {
+			if (pos < 0 || pos > length) {
+				throw new IOException("Seek out of bounds: " + pos + " in " + this);
+			}
+			if (pos == 0L) {
+				index = -1;
+				current = EMPTY;
+				return;
+			}
+			// Positions at a block boundary stay at the end of the previous block.
+			index = (int) ((pos - 1) >>> shift);
+			current = blocks[index].duplicate();
+			current.position((int) (pos - ((long) index << shift)));
+		}
+
+		@Override
+		public long length() {
+			return length;
+		}
+
+		@Override
+		public void close() throws IOException {
+		}
+
+		@Override
+		public Object clone() {
+			final Input clone = (Input) super.clone();
+			clone.current = current.duplicate();
+			return clone;
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import net.sf.lucis.core.Store;
+
+import org.apache.lucene.store.Directory;
+
+/**
+ * In-memory store that keeps the index outside the Java heap, so large indexes do not increase the
+ * garbage collection costs. The maximum direct memory of the JVM (-XX:MaxDirectMemorySize) must be
+ * big enough for the index and its merges.
+ * @author Andres Rodriguez
+ * @param <T> Checkpoint type.
+ */
+public class OffHeapStore<T> extends AbstractStore implements Store<T>, Closeable {
+	/** Index store. */
+	private final OffHeapDirectory directory;
+	/** Checkpoint. */
+	private volatile T checkpoint;
+
+	/**
+	 * Creates a store with a copy of the index and the checkpoint of another one.
+	 * @param store Source store.
+	 */
+	public OffHeapStore(final Store<T> store) throws IOException {
+		checkNotNull(store, "A source store must be provided.");
+		this.checkpoint = store.getCheckpoint();
+		this.directory = new OffHeapDirectory(store.getDirectory());
+	}
+
+	public OffHeapStore() {
+		this.directory = new OffHeapDirectory();
+		this.checkpoint = null;
+	}
+
+	public Directory getDirectory() {
+		return directory;
+	}
+
+	public T getCheckpoint() {
+		return checkpoint;
+	}
+
+	public Object getVersion() {
+		return checkpoint;
+	}
+
+	public void setCheckpoint(T checkpoint) {
+		checkNotNull(checkpoint, "A checkpoint must be provided.");
+		this.checkpoint = checkpoint;
+		changed();
+	}
+
+	/** Returns the number of bytes allocated by the index files. */
+	public long sizeInBytes() {
+		return directory.sizeInBytes();
+	}
+
+	/** Closes the store, releasing the index files. */
+	public void close() throws IOException {
+		directory.close();
+	}
+}
@@ -16,29 +16,36 @@
 package net.sf.lucis.core.impl;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.concurrent.atomic.AtomicReference;
 
 import net.derquinse.common.io.DurableFiles;
+import net.sf.lucis.core.DirectoryFactories;
+import net.sf.lucis.core.DirectoryFactory;
 import net.sf.lucis.core.Factory;
-import net.sf.lucis.core.ReindexingStore;
+import net.sf.lucis.core.IncrementalReindexingStore;
 import net.sf.lucis.core.StoreException;
 
+import org.apache.lucene.index.IndexFileNameFilter;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 
 /**
- * File system-based reindexing store.
+ * File system-based reindexing store. The destination may be seeded with hard links to the files of
+ * the current index, which is safe as Lucene never modifies an existing file in place and file
+ * system directories delete existing files before writing them. If hard links are not supported
+ * the files are copied.
  * @author Andres Rodriguez
  */
-public class ReindexingFSStore extends AbstractStore implements ReindexingStore {
+public class ReindexingFSStore extends AbstractStore implements IncrementalReindexingStore {
 	/** Name of the control file. */
 	private static final String STATUS_FILE = "status.ctl";
 	/** Name of the control file. */
@@ -49,6 +56,24 @@ public class ReindexingFSStore extends AbstractStore implements ReindexingStore
 	private static final String COPY01 = "copy01";
 	/** Relative path to second copy. */
 	private static final String COPY02 = "copy02";
+	/** File.toPath method (Java 7+). */
+	private static final Method TO_PATH;
+	/** Files.createLink method (Java 7+). */
+	private static final Method CREATE_LINK;
+
+	static {
+		Method toPath = null;
+		Method createLink = null;
+		try {
+			final Class<?> path = Class.forName("java.nio.file.Path");
+			toPath = File.class.getMethod("toPath");
+			createLink = Class.forName("java.nio.file.Files").getMethod("createLink", path, path);
+		} catch (Exception e) {
+			// Hard links not available.
+		}
+		TO_PATH = toPath;
+		CREATE_LINK = createLink;
+	}
 	/** Main directory. */
 	private final File file;
 	/** Status file. */
@@ -101,13 +126,23 @@ public class ReindexingFSStore extends AbstractStore implements ReindexingStore
 	}
 
 	public ReindexingFSStore(final String indexDir) {
+		this(indexDir, DirectoryFactories.standard());
+	}
+
+	/**
+	 * Constructor.
+	 * @param indexDir Index directory, which must exist.
+	 * @param factory Factory used to open the directories of both copies.
+	 */
+	public ReindexingFSStore(final String indexDir, final DirectoryFactory factory) {
+		checkNotNull(factory, "A directory factory must be provided.");
 		try {
 			this.file = new File(indexDir);
 			checkArgument(file.exists() && file.isDirectory(), "Invalid index directory");
 			this.statusFile = file(file, STATUS_FILE, "Status file");
 			this.checkpointFile = file(file, CHECKPOINT_FILE, "Checkpoint file");
-			this.copy01 = new Copy(file, COPY01);
-			this.copy02 = new Copy(file, COPY02);
+			this.copy01 = new Copy(file, COPY01, factory);
+			this.copy02 = new Copy(file, COPY02, factory);
 			final Status status = readStatus(this.statusFile);
 			if (Status.NULL.equals(status)) {
 				IndexWriter w = new IndexWriter(copy01.directory, Factory.get().writerConfig());
@@ -140,6 +175,63 @@ public class ReindexingFSStore extends AbstractStore implements ReindexingStore
 		throw new AssertionError();
 	}
 
+	/**
+	 * Creates a hard link to a file, copying it if links are not supported.
+	 * @param source Existing file.
+	 * @param link Link to create.
+	 */
+	private static void link(File source, File link) throws IOException {
+		if (CREATE_LINK != null) {
+			try {
+				CREATE_LINK.invoke(null, TO_PATH.invoke(link), TO_PATH.invoke(source));
+				return;
+			} catch (Exception e) {
+				// Fall back to copying (e.g. unsupported by the file system).
+			}
+		}
+		Files.copy(source, link);
+	}
+
+	public boolean seedDestination() throws StoreException {
+		final File source;
+		final File destination;
+		switch (getStatus()) {
+		case DONE01:
+			source = copy01.file;
+			destination = copy02.file;
+			break;
+		case DONE02:
+			source = copy02.file;
+			destination = copy01.file;
+			break;
+		default:
+			return false;
+		}
+		try {
+			final File[] existing = destination.listFiles();
+			if (existing == null) {
+				throw new IOException("Unable to list " + destination);
+			}
+			for (File f : existing) {
+				if (f.isFile() && !f.delete()) {
+					throw new IOException("Unable to delete " + f);
+				}
+			}
+			final File[] files = source.listFiles(IndexFileNameFilter.getFilter());
+			if (files == null) {
+				throw new IOException("Unable to list " + source);
+			}
+			for (File f : files) {
+				if (f.isFile()) {
+					link(f, new File(destination, f.getName()));
+				}
+			}
+			return true;
+		} catch (IOException e) {
+			throw new StoreException(e);
+		}
+	}
+
 	public Directory getDestinationDirectory() {
 		switch (getStatus()) {
 		case DONE01:
@@ -198,13 +290,13 @@ public class ReindexingFSStore extends AbstractStore implements ReindexingStore
 		private final File file;
 		private final Directory directory;
 
-		Copy(File base, String path) throws IOException {
+		Copy(File base, String path, DirectoryFactory factory) throws IOException {
 			this.file = new File(base, path);
 			checkArgument(!file.exists() || (file.exists() && file.isDirectory()), "Invalid index copy directory");
 			if (!file.exists()) {
 				file.mkdir();
 			}
-			this.directory = FSDirectory.open(this.file);
+			this.directory = factory.open(this.file);
 		}
 	}
 
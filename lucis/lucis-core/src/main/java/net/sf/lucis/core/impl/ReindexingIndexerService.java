@@ -40,35 +40,48 @@ public class ReindexingIndexerService<P> extends AbstractIndexService implements
 	private final ReindexingStore store;
 	/** Indexer. */
 	private final FullIndexer<P> indexer;
-	/** Delays. */
-	private volatile Delays delays = Delays.constant(600000);
 
 	public ReindexingIndexerService(ReindexingStore store, ReindexingWriter writer, FullIndexer<P> indexer,
 			ScheduledExecutorService externalExecutor, boolean pasive) {
-		super(externalExecutor, pasive);
+		super(externalExecutor, pasive, Delays.constant(600000));
 		this.store = checkNotNull(store);
 		this.writer = checkNotNull(writer);
 		this.indexer = checkNotNull(indexer);
+		setPriority(IndexingScheduler.REINDEXING_PRIORITY);
 	}
 
 	public ReindexingIndexerService(ReindexingStore store, ReindexingWriter writer, FullIndexer<P> indexer) {
 		this(store, writer, indexer, null, false);
 	}
 
-	/* CONFIGURABLE PROPERTIES */
-
-	public void setDelays(Delays delays) {
-		this.delays = delays;
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.impl.AbstractIndexService#isReindexing()
+	 */
+	@Override
+	boolean isReindexing() {
+		return true;
 	}
 
-	/* END CONFIGURABLE PROPERTIES. */
-
 	Runnable newTask() {
 		return new Task();
 	}
 
 	private final class Task extends AbstractTask {
 		public void run() {
+			if (!beginWrite()) {
+				log().trace("No reindexing permit available. Retrying later.");
+				scheduleRetry();
+				return;
+			}
+			try {
+				reindex();
+			} finally {
+				endWrite();
+			}
+		}
+
+		private void reindex() {
 			final Callable<P> callable = new Callable<P>() {
 				public P call() throws Exception {
 					return writer.reindex(store, indexer);
@@ -81,16 +94,16 @@ public class ReindexingIndexerService<P> extends AbstractIndexService implements
 					postCommit(payload);
 				}
 				log().trace("Post commit hook completed.");
-				schedule(IndexStatus.OK, delays.getNormal());
+				scheduleBatch(IndexStatus.OK, 0);
 			} catch (IndexException e) {
 				log().error(e, "Index exception while reindexing");
-				schedule(e.getStatus(), delays.getError());
+				scheduleError(e.getStatus());
 			} catch (InterruptedException e) {
 				interrupted();
 				return;
 			} catch (Exception ex) {
 				log().error(ex, "Exception while reindexing");
-				schedule(IndexStatus.ERROR, delays.getError());
+				scheduleError(IndexStatus.ERROR);
 			}
 		}
 
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.support;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+import net.sf.lucis.core.DocMapper;
+import net.sf.lucis.core.ItemHandler;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Scorer;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Multimap;
+
+/**
+ * A hit collector that maps every hit as it is collected and passes the item to a handler, so that
+ * result sets of any size are processed with bounded memory. Hits are collected in index order, so
+ * the stored fields of each segment are read sequentially.
+ * @author Andres Rodriguez
+ * @param <T> Type of the items.
+ */
+public final class ExportCollector<T> extends CountingCollector {
+	/** No fragments. */
+	private static final Multimap<String, String> NO_FRAGMENTS = ImmutableListMultimap.of();
+
+	/** Document mapper. */
+	private final DocMapper<T> mapper;
+	/** Item handler. */
+	private final ItemHandler<T> handler;
+	/** Stored fields selector. */
+	private final FieldSelector selector;
+	/** Current scorer. */
+	private Scorer scorer;
+	/** Current segment. */
+	private IndexReader reader;
+	/** Current segment base. */
+	private int docBase;
+	/** Whether the handler has asked to stop. */
+	private boolean stopped;
+	/** Number of handled items. */
+	private int handled;
+
+	/**
+	 * Constructor.
+	 * @param mapper Document mapper.
+	 * @param handler Item handler.
+	 * @param selector Stored fields selector ({@code null} to load every field).
+	 */
+	public ExportCollector(DocMapper<T> mapper, ItemHandler<T> handler, FieldSelector selector) {
+		this.mapper = checkNotNull(mapper, "The document mapper must be provided");
+		this.handler = checkNotNull(handler, "The item handler must be provided");
+		this.selector = selector;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.support.CountingCollector#setScorer(org.apache.lucene.search.Scorer)
+	 */
+	@Override
+	public void setScorer(Scorer scorer) throws IOException {
+		super.setScorer(scorer);
+		this.scorer = scorer;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.support.CountingCollector#setNextReader(org.apache.lucene.index.IndexReader,
+	 * int)
+	 */
+	@Override
+	public void setNextReader(IndexReader reader, int docBase) throws IOException {
+		this.reader = reader;
+		this.docBase = docBase;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.support.CountingCollector#collect(int)
+	 */
+	@Override
+	public void collect(int doc) throws IOException {
+		super.collect(doc);
+		if (stopped) {
+			return;
+		}
+		final float score = scorer != null ? scorer.score() : 0.0f;
+		final Document d = reader.document(doc, selector);
+		handled++;
+		stopped = !handler.handle(mapper.map(docBase + doc, score, d, NO_FRAGMENTS));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.support.CountingCollector#acceptsDocsOutOfOrder()
+	 */
+	@Override
+	public boolean acceptsDocsOutOfOrder() {
+		return false;
+	}
+
+	/** Resets the collector. */
+	public void reset() {
+		super.reset();
+		stopped = false;
+		handled = 0;
+	}
+
+	/** Returns the number of handled items. */
+	public int getHandled() {
+		return handled;
+	}
+
+	/** Returns whether the handler asked to stop. */
+	public boolean isStopped() {
+		return stopped;
+	}
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.support;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import net.sf.derquinse.lucis.Bucket;
+import net.sf.lucis.core.FacetLevel;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.FieldCache.StringIndex;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * A hit collector that computes multi-level facets over the indexed values of a list of fields,
+ * read from the field cache term ordinals. Hits are kept per segment and counted with primitive
+ * arrays. As term ordinals are sorted, segment counts are merged by value and only the top buckets
+ * of each level are kept in a bounded priority queue. The next level is computed only for the
+ * selected buckets.
+ * @author Andres Rodriguez
+ */
+public final class FacetCollector extends CountingCollector {
+	/** Maximum ratio between the number of values and the number of hits to count with an array. */
+	private static final int COUNTING_RATIO = 4;
+	/** Initial capacity of the hits array of a segment. */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** Bucket candidates order: from worst to best. */
+	private static final Comparator<Candidate> WORST_FIRST = new Comparator<Candidate>() {
+		public int compare(Candidate o1, Candidate o2) {
+			if (o1.hits != o2.hits) {
+				return o1.hits < o2.hits ? -1 : 1;
+			}
+			return o2.value.compareTo(o1.value);
+		}
+	};
+
+	/** Segment cursors order. */
+	private static final Comparator<Cursor> BY_VALUE = new Comparator<Cursor>() {
+		public int compare(Cursor o1, Cursor o2) {
+			return o1.value().compareTo(o2.value());
+		}
+	};
+
+	/** Facet levels. */
+	private final ImmutableList<FacetLevel> levels;
+	/** Collected segments. */
+	private List<Segment> segments;
+	/** Current segment. */
+	private Segment segment;
+
+	/**
+	 * Constructor.
+	 * @param levels Facet levels.
+	 */
+	public FacetCollector(List<FacetLevel> levels) {
+		this.levels = ImmutableList.copyOf(checkNotNull(levels, "The facet levels must be provided"));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.support.CountingCollector#setNextReader(org.apache.lucene.index.IndexReader,
+	 * int)
+	 */
+	@Override
+	public void setNextReader(IndexReader reader, int docBase) throws IOException {
+		if (levels.isEmpty()) {
+			return;
+		}
+		segment = new Segment(reader, levels.size());
+		segments.add(segment);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.support.CountingCollector#collect(int)
+	 */
+	@Override
+	public void collect(int doc) throws IOException {
+		super.collect(doc);
+		if (segment != null) {
+			segment.add(doc);
+		}
+	}
+
+	/** Resets the collector. */
+	public void reset() {
+		super.reset();
+		segments = Lists.newArrayList();
+		segment = null;
+	}
+
+	/**
+	 * Returns the first level buckets.
+	 * @throws IOException if the field values cannot be read.
+	 */
+	public List<Bucket> getBuckets() throws IOException {
+		if (levels.isEmpty()) {
+			return ImmutableList.of();
+		}
+		final List<Slice> slices = Lists.newArrayListWithCapacity(segments.size());
+		for (Segment s : segments) {
+			if (s.size > 0) {
+				slices.add(new Slice(s, s.docs, s.size));
+			}
+		}
+		return buckets(0, slices);
+	}
+
+	/** Computes the buckets of a level for the provided hits. */
+	private List<Bucket> buckets(int level, List<Slice> slices) throws IOException {
+		final FacetLevel facet = levels.get(level);
+		// Merge the segment counts by value.
+		final PriorityQueue<Cursor> merge = new PriorityQueue<Cursor>(Math.max(1, slices.size()), BY_VALUE);
+		for (Slice slice : slices) {
+			final Cursor cursor = count(slice.segment.index(level, facet.getField()), slice.docs, slice.size);
+			if (cursor.hasValue()) {
+				merge.add(cursor);
+			}
+		}
+		final PriorityQueue<Candidate> top = new PriorityQueue<Candidate>(11, WORST_FIRST);
+		while (!merge.isEmpty()) {
+			Cursor cursor = merge.poll();
+			final String value = cursor.value();
+			int hits = 0;
+			while (true) {
+				hits += cursor.hits();
+				if (cursor.next()) {
+					merge.add(cursor);
+				}
+				if (merge.isEmpty() || !merge.peek().value().equals(value)) {
+					break;
+				}
+				cursor = merge.poll();
+			}
+			if (hits < facet.getMinCount()) {
+				continue;
+			}
+			if (top.size() < facet.getLimit()) {
+				top.add(new Candidate(value, hits));
+			} else {
+				final Candidate worst = top.peek();
+				if (hits > worst.hits || (hits == worst.hits && value.compareTo(worst.value) < 0)) {
+					top.poll();
+					top.add(new Candidate(value, hits));
+				}
+			}
+		}
+		final List<Candidate> selected = Lists.newArrayList(top);
+		Collections.sort(selected, Collections.reverseOrder(WORST_FIRST));
+		final boolean last = level == levels.size() - 1;
+		final List<Bucket> buckets = Lists.newArrayListWithCapacity(selected.size());
+		for (Candidate c : selected) {
+			final List<Bucket> children = last ? null : buckets(level + 1, filter(level, slices, c.value));
+			buckets.add(new Bucket(c.value, c.hits, children));
+		}
+		return buckets;
+	}
+
+	/** Counts the hits of a segment by ordinal. */
+	private static Cursor count(StringIndex index, int[] docs, int size) {
+		final int[] order = index.order;
+		final int[] ords;
+		final int[] hits;
+		int n = 0;
+		if (index.lookup.length <= (long) size * COUNTING_RATIO) {
+			final int[] counts = new int[index.lookup.length];
+			for (int i = 0; i < size; i++) {
+				counts[order[docs[i]]]++;
+			}
+			int distinct = 0;
+			// Ordinal 0 is used for documents without value.
+			for (int ord = 1; ord < counts.length; ord++) {
+				if (counts[ord] > 0) {
+					distinct++;
+				}
+			}
+			ords = new int[distinct];
+			hits = new int[distinct];
+			for (int ord = 1; ord < counts.length; ord++) {
+				if (counts[ord] > 0) {
+					ords[n] = ord;
+					hits[n++] = counts[ord];
+				}
+			}
+		} else {
+			// Few hits for the number of values: sort the ordinals.
+			final int[] sorted = new int[size];
+			for (int i = 0; i < size; i++) {
+				sorted[i] = order[docs[i]];
+			}
+			Arrays.sort(sorted);
+			ords = new int[size];
+			hits = new int[size];
+			int i = 0;
+			while (i < size) {
+				final int ord = sorted[i];
+				int j = i + 1;
+				while (j < size && sorted[j] == ord) {
+					j++;
+				}
+				if (ord > 0) {
+					ords[n] = ord;
+					hits[n++] = j - i;
+				}
+				i = j;
+			}
+		}
+		return new Cursor(index.lookup, ords, hits, n);
+	}
+
+	/** Returns the hits of each slice with the provided value at a level. */
+	private List<Slice> filter(int level, List<Slice> slices, String value) throws IOException {
+		final String field = levels.get(level).getField();
+		final List<Slice> filtered = Lists.newArrayListWithCapacity(slices.size());
+		for (Slice slice : slices) {
+			final StringIndex index = slice.segment.index(level, field);
+			final int ord = index.binarySearchLookup(value);
+			if (ord <= 0) {
+				continue;
+			}
+			final int[] order = index.order;
+			int n = 0;
+			for (int i = 0; i < slice.size; i++) {
+				if (order[slice.docs[i]] == ord) {
+					n++;
+				}
+			}
+			if (n > 0) {
+				final int[] docs = new int[n];
+				n = 0;
+				for (int i = 0; i < slice.size; i++) {
+					final int doc = slice.docs[i];
+					if (order[doc] == ord) {
+						docs[n++] = doc;
+					}
+				}
+				filtered.add(new Slice(slice.segment, docs, n));
+			}
+		}
+		return filtered;
+	}
+
+	/** Hits of a segment. */
+	private static final class Segment {
+		/** Segment reader. */
+		private final IndexReader reader;
+		/** Field values per level, loaded lazily. */
+		private final StringIndex[] indexes;
+		/** Hits. */
+		private int[] docs;
+		/** Number of hits. */
+		private int size = 0;
+
+		Segment(IndexReader reader, int levels) {
+			this.reader = reader;
+			this.indexes = new StringIndex[levels];
+			this.docs = new int[Math.max(1, Math.min(INITIAL_CAPACITY, reader.maxDoc()))];
+		}
+
+		void add(int doc) {
+			if (size == docs.length) {
+				docs = Arrays.copyOf(docs, docs.length << 1);
+			}
+			docs[size++] = doc;
+		}
+
+		StringIndex index(int level, String field) throws IOException {
+			if (indexes[level] == null) {
+				indexes[level] = FieldCache.DEFAULT.getStringIndex(reader, field);
+			}
+			return indexes[level];
+		}
+	}
+
+	/** Subset of the hits of a segment. */
+	private static final class Slice {
+		final Segment segment;
+		final int[] docs;
+		final int size;
+
+		Slice(Segment segment, int[] docs, int size) {
+			this.segment = segment;
+			this.docs = docs;
+			this.size = size;
+		}
+	}
+
+	/** Cursor over the counts of a segment, in value order. */
+	private static final class Cursor {
+		private final String[] lookup;
+		private final int[] ords;
+		private final int[] hits;
+		private final int size;
+		private int position = 0;
+
+		Cursor(String[] lookup, int[] ords, int[] hits, int size) {
+			this.lookup = lookup;
+			this.ords = ords;
+			this.hits = hits;
+			this.size = size;
+		}
+
+		boolean hasValue() {
+			return position < size;
+		}
+
+		String value() {
+			return lookup[ords[position]];
+		}
+
+		int hits() {
+			return hits[position];
+		}
+
+		boolean next() {
+			position++;
+			return hasValue();
+		}
+	}
+
+	/** Bucket candidate. */
+	private static final class Candidate {
+		final String value;
+		final int hits;
+
+		Candidate(String value, int hits) {
+			this.value = value;
+			this.hits = hits;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.support;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.derquinse.lucis.Group;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.FieldCache.StringIndex;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A hit collector that groups the hits by the indexed values of a list of fields, without loading
+ * any stored document. Values are read from the field cache term ordinals, so the fields must be
+ * indexed, untokenized and single-valued. Hits are counted per segment with primitive arrays and
+ * converted to groups once the segment is finished.
+ * @author Andres Rodriguez
+ */
+public final class GroupingCollector extends CountingCollector {
+	/** Maximum ratio between the number of values and the number of hits to count with an array. */
+	private static final int COUNTING_RATIO = 4;
+
+	/** Fields to group by. */
+	private final String[] fields;
+	/** Result group. */
+	private Group group;
+	/** Current segment. */
+	private IndexReader reader;
+	/** Hits of the current segment. */
+	private int[] docs;
+	/** Number of hits of the current segment. */
+	private int size;
+
+	/**
+	 * Constructor.
+	 * @param fields Fields to group by. A {@code null} field ends the list.
+	 */
+	public GroupingCollector(List<String> fields) {
+		final List<String> list = Lists.newArrayList();
+		if (fields != null) {
+			for (String field : fields) {
+				if (field == null) {
+					break;
+				}
+				list.add(field);
+			}
+		}
+		this.fields = list.toArray(new String[list.size()]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.support.CountingCollector#setNextReader(org.apache.lucene.index.IndexReader,
+	 * int)
+	 */
+	@Override
+	public void setNextReader(IndexReader reader, int docBase) throws IOException {
+		flush();
+		this.reader = reader;
+		if (fields.length > 0 && (docs == null || docs.length < reader.maxDoc())) {
+			docs = new int[reader.maxDoc()];
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see net.sf.lucis.core.support.CountingCollector#collect(int)
+	 */
+	@Override
+	public void collect(int doc) throws IOException {
+		super.collect(doc);
+		group.addHit();
+		if (fields.length > 0) {
+			docs[size++] = doc;
+		}
+	}
+
+	/** Resets the collector. */
+	public void reset() {
+		super.reset();
+		group = new Group();
+		reader = null;
+		size = 0;
+	}
+
+	/**
+	 * Returns the result group.
+	 * @throws IOException if the field values cannot be read.
+	 */
+	public Group getGroup() throws IOException {
+		flush();
+		return group;
+	}
+
+	/** Groups the hits of the current segment. */
+	private void flush() throws IOException {
+		if (size > 0) {
+			final StringIndex[] indexes = new StringIndex[fields.length];
+			for (int i = 0; i < fields.length; i++) {
+				indexes[i] = FieldCache.DEFAULT.getStringIndex(reader, fields[i]);
+			}
+			add(group, indexes, 0, docs, 0, size);
+		}
+		size = 0;
+	}
+
+	/**
+	 * Groups a range of hits of the current segment.
+	 * @param g Parent group.
+	 * @param indexes Field values.
+	 * @param level Current level.
+	 * @param hits Hits.
+	 * @param from Start of the range (inclusive).
+	 * @param to End of the range (exclusive).
+	 */
+	private static void add(Group g, StringIndex[] indexes, int level, int[] hits, int from, int to) {
+		final int[] order = indexes[level].order;
+		final String[] lookup = indexes[level].lookup;
+		final boolean last = level == indexes.length - 1;
+		final int n = to - from;
+		if (lookup.length <= (long) n * COUNTING_RATIO) {
+			// Count with an array indexed by ordinal.
+			final int[] counts = new int[lookup.length];
+			for (int i = from; i < to; i++) {
+				counts[order[hits[i]]]++;
+			}
+			if (last) {
+				// Ordinal 0 is used for documents without value.
+				for (int ord = 1; ord < counts.length; ord++) {
+					if (counts[ord] > 0) {
+						g.getGroup(lookup[ord]).addHits(counts[ord]);
+					}
+				}
+				return;
+			}
+			// Counting sort to recurse on the hits of each value.
+			final int[] starts = new int[lookup.length];
+			for (int ord = 1; ord < counts.length; ord++) {
+				starts[ord] = starts[ord - 1] + counts[ord - 1];
+			}
+			final int[] sorted = new int[n];
+			final int[] next = starts.clone();
+			for (int i = from; i < to; i++) {
+				final int doc = hits[i];
+				sorted[next[order[doc]]++] = doc;
+			}
+			for (int ord = 1; ord < counts.length; ord++) {
+				if (counts[ord] > 0) {
+					final Group child = g.getGroup(lookup[ord]);
+					child.addHits(counts[ord]);
+					add(child, indexes, level + 1, sorted, starts[ord], starts[ord] + counts[ord]);
+				}
+			}
+		} else {
+			// Few hits for the number of values: sort the hits by ordinal.
+			final long[] keys = new long[n];
+			for (int i = 0; i < n; i++) {
+				final int doc = hits[from + i];
+				keys[i] = ((long) order[doc] << 32) | doc;
+			}
+			Arrays.sort(keys);
+			final int[] sorted = new int[n];
+			for (int i = 0; i < n; i++) {
+				sorted[i] = (int) keys[i];
+			}
+			int start = 0;
+			while (start < n) {
+				final int ord = (int) (keys[start] >>> 32);
+				int end = start + 1;
+				while (end < n && (int) (keys[end] >>> 32) == ord) {
+					end++;
+				}
+				if (ord > 0) {
+					final Group child = g.getGroup(lookup[ord]);
+					child.addHits(end - start);
+					if (!last) {
+						add(child, indexes, level + 1, sorted, start, end);
+					}
+				}
+				start = end;
+			}
+		}
+	}
+}
@@ -16,6 +16,9 @@
 package net.sf.lucis.core.support;
 
 import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.Nullable;
 
 import net.sf.lucis.core.DirectoryProvider;
 import net.sf.lucis.core.Queryable;
@@ -52,16 +55,36 @@ public final class Queryables {
 		return new DefaultQueryable(MultiSearcherProvider.of(providers));
 	}
 
+	/**
+	 * Returns a queryable over several stores whose top hits searches are performed in parallel.
+	 * @param providers Directory providers.
+	 * @param executor Executor for parallel searches ({@code null} for sequential searches).
+	 */
+	public static Queryable multi(Collection<DirectoryProvider> providers, @Nullable ExecutorService executor) {
+		return new DefaultQueryable(MultiSearcherProvider.of(providers, executor));
+	}
+
 	public static Queryable managed(DirectoryProvider provider) {
 		return new DefaultQueryable(ManagedSingleSearcherProvider.of(provider));
 	}
 
 	public static Queryable managed(Iterable<DirectoryProvider> providers) {
+		return managed(providers, null);
+	}
+
+	/**
+	 * Returns a managed queryable over several stores whose top hits searches are performed in
+	 * parallel over the segments of every store. Searches with collectors (e.g. counts and groups)
+	 * are performed in the calling thread.
+	 * @param providers Directory providers.
+	 * @param executor Executor for parallel searches ({@code null} for sequential searches).
+	 */
+	public static Queryable managed(Iterable<DirectoryProvider> providers, @Nullable ExecutorService executor) {
 		ImmutableList<DirectoryProvider> list = ImmutableList.copyOf(providers);
 		if (list.size() == 1) {
-			return managed(list.get(0));
+			return new DefaultQueryable(ManagedSingleSearcherProvider.of(list.get(0), executor));
 		}
-		return new DefaultQueryable(ManagedMultiSearcherProvider.of(list));
+		return new DefaultQueryable(ManagedMultiSearcherProvider.of(list, executor));
 	}
 
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.support;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreCachingWrappingScorer;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+
+/**
+ * A hit collector that returns the top hits of a sorted query after a given one, so that deep pages
+ * cost the same as the first one. Hits that sort before the last hit of the previous page, or equal
+ * to it, are counted but not collected. Ties are broken by document number, as in the sorted
+ * searches of the index searcher.
+ * @author Andres Rodriguez
+ */
+public final class SearchAfterCollector extends Collector {
+	/** Last hit of the previous page. */
+	private final FieldDoc after;
+	/** Comparators of the sort fields, using a single slot. */
+	@SuppressWarnings("rawtypes")
+	private final FieldComparator[] comparators;
+	/** Sort direction of each field (1 or -1). */
+	private final int[] reverse;
+	/** Top hits collector. */
+	private final TopFieldCollector top;
+	/** Current segment base. */
+	private int docBase;
+	/** Number of hits. */
+	private int totalHits;
+
+	/**
+	 * Constructor.
+	 * @param sort Sort to apply.
+	 * @param after Last hit of the previous page, with the values of the sort fields.
+	 * @param n Maximum number of hits to return.
+	 * @throws IllegalArgumentException if the hit does not match the sort.
+	 * @throws IOException if the comparators cannot be created.
+	 */
+	public SearchAfterCollector(Sort sort, FieldDoc after, int n) throws IOException {
+		checkNotNull(sort, "The sort must be provided");
+		this.after = checkNotNull(after, "The last hit must be provided");
+		final SortField[] fields = sort.getSort();
+		checkArgument(after.fields != null && after.fields.length == fields.length,
+				"The last hit does not match the sort");
+		this.comparators = new FieldComparator[fields.length];
+		this.reverse = new int[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			comparators[i] = fields[i].getComparator(1, i);
+			reverse[i] = fields[i].getReverse() ? -1 : 1;
+		}
+		this.top = TopFieldCollector.create(sort, Math.max(n, 1), true, false, false, true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.search.Collector#setScorer(org.apache.lucene.search.Scorer)
+	 */
+	@Override
+	public void setScorer(Scorer scorer) throws IOException {
+		// Scores may be used both to skip and to sort.
+		final Scorer s = new ScoreCachingWrappingScorer(scorer);
+		for (FieldComparator<?> comparator : comparators) {
+			comparator.setScorer(s);
+		}
+		top.setScorer(s);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.search.Collector#setNextReader(org.apache.lucene.index.IndexReader, int)
+	 */
+	@Override
+	public void setNextReader(IndexReader reader, int docBase) throws IOException {
+		this.docBase = docBase;
+		for (FieldComparator<?> comparator : comparators) {
+			comparator.setNextReader(reader, docBase);
+		}
+		top.setNextReader(reader, docBase);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.search.Collector#collect(int)
+	 */
+	@Override
+	public void collect(int doc) throws IOException {
+		totalHits++;
+		if (isAfter(doc)) {
+			top.collect(doc);
+		}
+	}
+
+	/** Returns whether a hit of the current segment sorts after the last hit of the previous page. */
+	@SuppressWarnings("unchecked")
+	private boolean isAfter(int doc) throws IOException {
+		for (int i = 0; i < comparators.length; i++) {
+			final FieldComparator<Object> comparator = comparators[i];
+			comparator.copy(0, doc);
+			final int c = reverse[i] * comparator.compareValues(comparator.value(0), after.fields[i]);
+			if (c != 0) {
+				return c > 0;
+			}
+		}
+		return docBase + doc > after.doc;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.lucene.search.Collector#acceptsDocsOutOfOrder()
+	 */
+	@Override
+	public boolean acceptsDocsOutOfOrder() {
+		return false;
+	}
+
+	/** Returns the number of hits, including the skipped ones. */
+	public int getTotalHits() {
+		return totalHits;
+	}
+
+	/** Returns the top hits after the provided one. The total includes the skipped hits. */
+	public TopDocs topDocs() {
+		final TopDocs docs = top.topDocs();
+		docs.totalHits = totalHits;
+		return docs;
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for AdaptiveDelays.
+ * @author Andres Rodriguez
+ */
+public class AdaptiveDelaysTest {
+	@Test
+	public void backoff() {
+		final AdaptiveDelays d = AdaptiveDelays.of(100L, 1000L, 5000L, 50, 0.0);
+		assertEquals(d.afterIdle(), 100L);
+		assertEquals(d.afterIdle(), 200L);
+		assertEquals(d.afterIdle(), 400L);
+		assertEquals(d.afterIdle(), 800L);
+		assertEquals(d.afterIdle(), 1000L);
+		assertEquals(d.afterIdle(), 1000L);
+		assertEquals(d.afterBatch(10), 100L);
+		assertEquals(d.afterIdle(), 100L);
+		assertEquals(d.afterError(), 100L);
+		assertEquals(d.afterError(), 200L);
+		assertEquals(d.afterBatch(50), 0L);
+		assertEquals(d.afterError(), 100L);
+	}
+
+	@Test
+	public void jitter() {
+		final AdaptiveDelays d = AdaptiveDelays.of(1000L, 1000L, 100);
+		for (int i = 0; i < 100; i++) {
+			final long delay = d.afterIdle();
+			assertTrue(delay >= 900L && delay <= 1100L);
+		}
+	}
+
+	@Test
+	public void constant() {
+		final DelayPolicy d = Delays.of(1L, 2L, 3L);
+		assertEquals(d.afterBatch(1000), 1L);
+		assertEquals(d.afterIdle(), 2L);
+		assertEquals(d.afterError(), 3L);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void invalid() {
+		AdaptiveDelays.of(100L, 10L, 10);
+	}
+}
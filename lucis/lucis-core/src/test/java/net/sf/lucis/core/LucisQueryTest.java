@@ -16,21 +16,44 @@
 package net.sf.lucis.core;
 
 import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+
+import net.sf.derquinse.lucis.Bucket;
+import net.sf.derquinse.lucis.FacetResult;
+import net.sf.derquinse.lucis.Group;
+import net.sf.derquinse.lucis.GroupResult;
+import net.sf.derquinse.lucis.Item;
 import net.sf.derquinse.lucis.Page;
+import net.sf.derquinse.lucis.Result;
+import net.sf.lucis.core.impl.DefaultQueryable;
 import net.sf.lucis.core.impl.DefaultWriter;
 import net.sf.lucis.core.impl.RAMStore;
+import net.sf.lucis.core.impl.SingleSearcherProvider;
 import net.sf.lucis.core.support.Queryables;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Ordering;
 
 @Test
 public class LucisQueryTest {
@@ -81,6 +104,216 @@ public class LucisQueryTest {
 		Assert.assertNotNull(result);
 	}
 
+	@Test(dependsOnMethods = "createQueryable")
+	public void selectedFields() {
+		final Query query = new TermQuery(new Term(ANALIZED, "ipsum"));
+		final DocMapper<String> mapper = new DocMapper<String>() {
+			public String map(int id, float score, Document doc, Multimap<String, String> fragments) {
+				Assert.assertNull(doc.get(STR));
+				Assert.assertNotNull(doc.get(ANALIZED));
+				Assert.assertFalse(fragments.isEmpty());
+				return doc.get(ID);
+			}
+		};
+		final Highlight highlight = Highlight.of(ImmutableMap.of(ANALIZED, 5));
+		final Page<String> page = queryable.query(LucisQuery.page(query, null, null, mapper, 0, 10, highlight,
+				ImmutableSet.of(ID)));
+		assertEquals(page.size(), 10);
+		for (String id : page) {
+			Assert.assertNotNull(id);
+		}
+		Assert.assertNotNull(queryable.query(LucisQuery.first(query, null, null, mapper, highlight, ImmutableSet.of(ID)))
+				.getItem());
+	}
+
+	@Test(dependsOnMethods = "createQueryable")
+	public void cursors() {
+		final Query query = new TermQuery(new Term(ANALIZED, "ipsum"));
+		cursors(query, null, false);
+		cursors(query, new Sort(new SortField(ID, SortField.STRING)), false);
+		// Sorts with ties and values that must be escaped.
+		cursors(query, new Sort(new SortField(STR, SortField.STRING)), false);
+		final Sort reverse = new Sort(new SortField(STR, SortField.STRING, true), new SortField(null, SortField.SCORE));
+		cursors(query, reverse, false);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void offsetCursorWithoutSort() {
+		// Pages sorted by relevance are collected after the last hit, never by offset.
+		LucisQuery.pageAfter(new MatchAllDocsQuery(), MAPPER, "7", 7);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void relevanceCursorWithSort() {
+		final Sort sort = new Sort(new SortField(ID, SortField.STRING));
+		LucisQuery.pageAfter(new MatchAllDocsQuery(), null, sort, MAPPER, "7:6:3f800000", 7);
+	}
+
+	@Test(dependsOnMethods = "createQueryable")
+	public void basicSearcher() {
+		final Query query = new TermQuery(new Term(ANALIZED, "ipsum"));
+		cursors(query, null, true);
+		final Item<Node> item = basic().query(LucisQuery.first(query, null, null, MAPPER, null,
+				ImmutableSet.of(ID)));
+		assertEquals(item.getItem().id, queryable.query(LucisQuery.first(query, MAPPER)).getItem().id);
+	}
+
+	/** Returns a queryable whose searchers only provide the basic operations. */
+	private Queryable basic() {
+		final Supplier<LucisSearcher> provider = SingleSearcherProvider.of(store);
+		return new DefaultQueryable(new Supplier<LucisSearcher>() {
+			public LucisSearcher get() {
+				final LucisSearcher searcher = provider.get();
+				return new LucisSearcher() {
+					public void search(Query query, Filter filter, Collector results) {
+						searcher.search(query, filter, results);
+					}
+
+					public TopDocs search(Query query, Filter filter, int n) {
+						return searcher.search(query, filter, n);
+					}
+
+					public TopFieldDocs search(Query query, Filter filter, int n, Sort sort) {
+						return searcher.search(query, filter, n, sort);
+					}
+
+					public Query rewrite(Query query) {
+						return searcher.rewrite(query);
+					}
+
+					public Document doc(int i) {
+						return searcher.doc(i);
+					}
+
+					public void close() {
+						searcher.close();
+					}
+				};
+			}
+		});
+	}
+
+	private void cursors(Query query, Sort sort, boolean basic) {
+		final Queryable q = basic ? basic() : queryable;
+		final Page<Node> all = queryable.query(LucisQuery.page(query, null, sort, MAPPER, 0, 100));
+		final List<String> expected = Lists.newArrayList();
+		for (Node node : all) {
+			expected.add(node.id);
+		}
+		final List<String> actual = Lists.newArrayList();
+		String cursor = null;
+		do {
+			final Page<Node> page = q.query(LucisQuery.pageAfter(query, null, sort, MAPPER, cursor, 7));
+			assertEquals(page.getTotalHits(), all.getTotalHits());
+			assertEquals(page.getFirstResult(), actual.size());
+			for (Node node : page) {
+				actual.add(node.id);
+			}
+			cursor = page.getCursor();
+		} while (cursor != null);
+		assertEquals(actual, expected);
+	}
+
+	@Test(dependsOnMethods = "createQueryable")
+	public void batchMapper() {
+		final Query query = new TermQuery(new Term(ANALIZED, "ipsum"));
+		final BatchDocMapper<String> mapper = new BatchDocMapper<String>() {
+			public List<String> map(int[] ids, float score, List<Document> docs,
+					List<Multimap<String, String>> fragments) {
+				assertEquals(docs.size(), ids.length);
+				assertEquals(fragments.size(), ids.length);
+				final List<String> items = Lists.newArrayList();
+				for (Document doc : docs) {
+					items.add(doc.get(ID));
+				}
+				return items;
+			}
+		};
+		final Page<Node> expected = queryable.query(LucisQuery.page(query, null, null, MAPPER, 5, 20));
+		final Page<String> actual = queryable.query(LucisQuery.page(query, null, null, mapper, 5, 20, null,
+				ImmutableSet.of(ID)));
+		assertEquals(actual.size(), expected.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(actual.getItems().get(i), expected.getItems().get(i).id);
+		}
+	}
+
+	@Test(dependsOnMethods = "createQueryable")
+	public void export() {
+		final Query query = new TermQuery(new Term(ANALIZED, "ipsum"));
+		final List<Integer> ids = Lists.newArrayList();
+		final DocMapper<Integer> mapper = new DocMapper<Integer>() {
+			public Integer map(int id, float score, Document doc, Multimap<String, String> fragments) {
+				Assert.assertNull(doc.get(ANALIZED));
+				Assert.assertNotNull(doc.get(ID));
+				return id;
+			}
+		};
+		final Result result = queryable.query(LucisQuery.export(query, null, mapper, ImmutableSet.of(ID),
+				new ItemHandler<Integer>() {
+					public boolean handle(Integer item) {
+						ids.add(item);
+						return true;
+					}
+				}));
+		assertEquals(ids.size(), result.getTotalHits());
+		assertEquals(ids, Ordering.natural().sortedCopy(ids));
+		final List<Integer> first = Lists.newArrayList();
+		final Result stopped = queryable.query(LucisQuery.export(query, null, mapper, ImmutableSet.of(ID),
+				new ItemHandler<Integer>() {
+					public boolean handle(Integer item) {
+						first.add(item);
+						return first.size() < 5;
+					}
+				}));
+		assertEquals(first, ids.subList(0, 5));
+		assertEquals(stopped.getTotalHits(), result.getTotalHits());
+	}
+
+	@Test(dependsOnMethods = "createQueryable")
+	public void indexedGroup() {
+		final Query query = new MatchAllDocsQuery();
+		final List<String> fields = ImmutableList.of(STR, ID);
+		final GroupResult stored = queryable.query(LucisQuery.group(query, null, fields));
+		final GroupResult indexed = queryable.query(LucisQuery.indexedGroup(query, null, fields));
+		assertEquals(indexed.getTotalHits(), 100);
+		assertEquals(indexed.getGroup().getGroupNames().size(), 10);
+		assertEqualGroups(indexed.getGroup(), stored.getGroup());
+	}
+
+	@Test(dependsOnMethods = "createQueryable")
+	public void facets() {
+		final Query query = new MatchAllDocsQuery();
+		final Group group = queryable.query(LucisQuery.group(query, null, ImmutableList.of(STR))).getGroup();
+		final List<String> values = Ordering.natural().sortedCopy(group.getGroupNames());
+		final List<FacetLevel> levels = ImmutableList.of(FacetLevel.of(STR, 3), FacetLevel.of(ID, 2));
+		final FacetResult result = queryable.query(LucisQuery.facets(query, null, levels));
+		assertEquals(result.getTotalHits(), 100);
+		final List<Bucket> buckets = result.getBuckets();
+		assertEquals(buckets.size(), 3);
+		for (int i = 0; i < 3; i++) {
+			final Bucket bucket = buckets.get(i);
+			// Same hits, so sorted by value.
+			assertEquals(bucket.getValue(), values.get(i));
+			assertEquals(bucket.getHits(), 10);
+			final List<Bucket> ids = bucket.getBuckets();
+			assertEquals(ids.size(), 2);
+			assertEquals(ids.get(0).getHits(), 1);
+			Assert.assertTrue(ids.get(0).getValue().compareTo(ids.get(1).getValue()) < 0);
+			assertEquals(bucket.getHits(), group.getGroup(bucket.getValue()).getHits());
+		}
+		final List<FacetLevel> min = ImmutableList.of(FacetLevel.of(STR, 3, 11));
+		Assert.assertTrue(queryable.query(LucisQuery.facets(query, null, min)).getBuckets().isEmpty());
+	}
+
+	private void assertEqualGroups(Group actual, Group expected) {
+		assertEquals(actual.getHits(), expected.getHits());
+		assertEquals(actual.getGroupNames(), expected.getGroupNames());
+		for (String name : expected.getGroupNames()) {
+			assertEqualGroups(actual.getGroup(name), expected.getGroup(name));
+		}
+	}
+
 	private Batch<Long, Object> add(int from, int to, long cp) throws InterruptedException {
 		final Batch.Builder<Long> builder = Batch.builder();
 		for (int i = from; i <= to; i++) {
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static net.sf.lucis.core.impl.DocumentSupport.batch;
+import static net.sf.lucis.core.impl.DocumentSupport.termId;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import net.sf.lucis.core.Batch;
+import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.Queryable;
+import net.sf.lucis.core.support.Queryables;
+
+import org.apache.lucene.search.TermQuery;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for bulk deletions.
+ * @author Andres Rodriguez
+ */
+public class BulkDeletionTest {
+	private final DefaultWriter writer = new DefaultWriter();
+	private final RAMStore<Long> store = new RAMStore<Long>();
+	private final Queryable queryable = Queryables.simple(store);
+
+	@Test
+	public void builder() throws InterruptedException {
+		final Batch.Builder<Long> builder = Batch.builder();
+		builder.delete(DocumentSupport.ID, "a").delete("other", "b").delete(DocumentSupport.ID, "c");
+		builder.delete(new TermQuery(termId(1)));
+		final Batch<Long, Object> b = builder.build(1L);
+		assertFalse(b.isEmpty());
+		assertEquals(b.size(), 4);
+		assertEquals(b.getDeletions().size(), 3);
+		assertEquals(b.getDeletions().get(1).field(), DocumentSupport.ID);
+		assertEquals(b.getDeletions().get(1).text(), "c");
+		assertEquals(b.getDeletions().get(2).field(), "other");
+		assertEquals(b.getQueryDeletions().size(), 1);
+	}
+
+	@Test
+	public void delete() throws InterruptedException {
+		assertEquals(writer.write(store, batch(1, 1000, 1L)), IndexStatus.OK);
+		assertEquals(DocumentSupport.count(queryable), 1000);
+		final Batch.Builder<Long> builder = Batch.builder();
+		for (int i = 1; i <= 500; i++) {
+			builder.delete(termId(i));
+		}
+		builder.delete(new TermQuery(termId(750)));
+		assertEquals(writer.write(store, builder.build(2L)), IndexStatus.OK);
+		assertEquals(DocumentSupport.count(queryable), 499);
+		DocumentSupport.notFound(queryable, 250);
+		DocumentSupport.notFound(queryable, 750);
+		DocumentSupport.found(queryable, 501);
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static net.sf.lucis.core.impl.DocumentSupport.batch;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.lucis.core.Batch;
+import net.sf.lucis.core.Delays;
+import net.sf.lucis.core.GroupCommit;
+import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.Indexer;
+import net.sf.lucis.core.Queryable;
+import net.sf.lucis.core.Store;
+import net.sf.lucis.core.Writer;
+import net.sf.lucis.core.support.Queryables;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for group commits.
+ * @author Andres Rodriguez
+ */
+public class GroupCommitTest {
+	private final DefaultWriter writer = new DefaultWriter();
+
+	@Test
+	public void budget() {
+		assertTrue(GroupCommit.disabled().isReached(0, 0L, 0L));
+		final GroupCommit gc = GroupCommit.of(100, 0L, 0L);
+		assertFalse(gc.isReached(99, Long.MAX_VALUE, Long.MAX_VALUE));
+		assertTrue(gc.isReached(100, 0L, 0L));
+	}
+
+	@Test
+	public void writeAll() throws InterruptedException {
+		final RAMStore<Long> store = new RAMStore<Long>();
+		final Queryable queryable = Queryables.simple(store);
+		final List<Batch<Long, Object>> batches = Lists.newArrayList();
+		batches.add(batch(1, 100, 1L));
+		batches.add(batch(101, 200, 2L));
+		assertEquals(writer.writeAll(store, batches), IndexStatus.OK);
+		assertEquals(store.getCheckpoint(), Long.valueOf(2L));
+		assertEquals(DocumentSupport.count(queryable), 200);
+		assertNull(writer.writeAll(store, batches));
+		batches.clear();
+		batches.add(batch(201, 300, 3L));
+		final Batch.Builder<Long> builder = Batch.builder();
+		builder.recreate().add(DocumentSupport.document(400));
+		batches.add(builder.build(4L));
+		batches.add(batch(401, 410, 5L));
+		assertEquals(writer.writeAll(store, batches), IndexStatus.OK);
+		assertEquals(store.getCheckpoint(), Long.valueOf(5L));
+		assertEquals(DocumentSupport.count(queryable), 11);
+		DocumentSupport.notFound(queryable, 5);
+		DocumentSupport.found(queryable, 400);
+	}
+
+	@Test
+	public void service() throws InterruptedException {
+		final RAMStore<Long> store = new RAMStore<Long>();
+		final TestIndexer indexer = new TestIndexer();
+		final DefaultIndexerService<Long, Object> service = new DefaultIndexerService<Long, Object>(store, writer,
+				indexer);
+		service.setDelays(Delays.constant(10L));
+		service.setGroupCommit(GroupCommit.of(5000, 0L, 0L));
+		service.start();
+		for (int i = 0; i < 100 && indexer.committed.get() < 20; i++) {
+			Thread.sleep(50L);
+		}
+		service.stop();
+		assertEquals(indexer.committed.get(), 20);
+		assertEquals(store.getCheckpoint(), Long.valueOf(20L));
+		assertEquals(DocumentSupport.count(Queryables.simple(store)), 20000);
+	}
+
+	@Test
+	public void fallback() throws InterruptedException {
+		final RAMStore<Long> store = new RAMStore<Long>();
+		final TestIndexer indexer = new TestIndexer();
+		// A writer without group commit support.
+		final Writer single = new Writer() {
+			public <T, P> IndexStatus write(Store<T> store, Batch<T, P> batch) throws InterruptedException {
+				return writer.write(store, batch);
+			}
+		};
+		final DefaultIndexerService<Long, Object> service = new DefaultIndexerService<Long, Object>(store, single,
+				indexer);
+		service.setDelays(Delays.constant(10L));
+		service.setGroupCommit(GroupCommit.of(5000, 0L, 0L));
+		service.start();
+		for (int i = 0; i < 100 && indexer.committed.get() < 20; i++) {
+			Thread.sleep(50L);
+		}
+		service.stop();
+		assertEquals(indexer.committed.get(), 20);
+		assertEquals(store.getCheckpoint(), Long.valueOf(20L));
+		assertEquals(DocumentSupport.count(Queryables.simple(store)), 20000);
+	}
+
+	private static final class TestIndexer implements Indexer<Long, Object> {
+		private final AtomicInteger committed = new AtomicInteger();
+
+		public Batch<Long, Object> index(Long checkpoint) throws InterruptedException {
+			final long cp = checkpoint != null ? checkpoint.longValue() : 0L;
+			if (cp >= 20L) {
+				return null;
+			}
+			final int start = (int) cp * 1000;
+			final Batch.Builder<Long> builder = Batch.builder();
+			for (int i = start; i < start + 1000; i++) {
+				builder.add(DocumentSupport.document(i));
+			}
+			return builder.build(cp + 1, new Object());
+		}
+
+		public void afterCommit(Object payload) {
+			committed.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static net.sf.lucis.core.impl.DocumentSupport.document;
+import static net.sf.lucis.core.impl.DocumentSupport.termId;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import net.sf.lucis.core.Adder;
+import net.sf.lucis.core.IncrementalAdder;
+import net.sf.lucis.core.IncrementalFullIndexer;
+import net.sf.lucis.core.Queryable;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.TermQuery;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for incremental reindexing.
+ * @author Andres Rodriguez
+ */
+public class IncrementalReindexingTest extends AbstractDirectoryTest {
+	private ReindexingFSStore store;
+	private Queryable queryable;
+	private final DefaultReindexingWriter writer = new DefaultReindexingWriter();
+
+	@BeforeClass
+	public void init() {
+		store = new ReindexingFSStore(getIndexDir());
+		queryable = new DefaultQueryable(SingleSearcherProvider.of(store));
+	}
+
+	@Test
+	public void full() throws InterruptedException {
+		final Indexer indexer = new Indexer();
+		writer.reindex(store, indexer);
+		// The initial index is empty, but seeded anyway.
+		assertTrue(indexer.incremental);
+		assertEquals(DocumentSupport.count(queryable), 100);
+	}
+
+	@Test(dependsOnMethods = "full")
+	public void incremental() throws Exception {
+		final Indexer indexer = new Indexer();
+		writer.reindex(store, indexer);
+		assertTrue(indexer.incremental);
+		assertEquals(store.getCheckpoint(), "2");
+		assertEquals(DocumentSupport.count(queryable), 100);
+		DocumentSupport.notFound(queryable, 5);
+		DocumentSupport.notFound(queryable, 15);
+		DocumentSupport.found(queryable, 20);
+		DocumentSupport.found(queryable, 105);
+		// The previous copy is untouched.
+		final IndexReader reader = IndexReader.open(store.getDestinationDirectory());
+		try {
+			assertEquals(reader.numDocs(), 100);
+			assertEquals(reader.docFreq(termId(5)), 1);
+			assertEquals(reader.docFreq(termId(105)), 0);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static final class Indexer implements IncrementalFullIndexer<Object> {
+		private boolean incremental;
+
+		public Object index(IncrementalAdder adder) throws InterruptedException {
+			incremental = adder.isIncremental();
+			if (adder.getCheckpoint() == null) {
+				return index((Adder) adder);
+			}
+			assertFalse(adder.getCheckpoint().equals("2"));
+			for (int i = 1; i <= 10; i++) {
+				adder.delete(termId(i));
+			}
+			adder.delete(new TermQuery(termId(15)));
+			adder.update(termId(20), document(20));
+			for (int i = 101; i <= 111; i++) {
+				adder.add(document(i));
+			}
+			adder.setCheckpoint("2");
+			return null;
+		}
+
+		public Object index(Adder adder) throws InterruptedException {
+			for (int i = 1; i <= 100; i++) {
+				adder.add(document(i));
+			}
+			adder.setCheckpoint("1");
+			return null;
+		}
+
+		public void afterCommit(Object payload) {
+		}
+	}
+}
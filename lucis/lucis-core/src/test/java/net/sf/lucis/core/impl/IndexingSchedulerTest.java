@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.lucis.core.Batch;
+import net.sf.lucis.core.Delays;
+import net.sf.lucis.core.Indexer;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for IndexingScheduler.
+ * @author Andres Rodriguez
+ */
+public class IndexingSchedulerTest {
+	private final IndexingScheduler scheduler = new IndexingScheduler(2, 1);
+
+	@AfterClass
+	public void shutdown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void priorities() throws InterruptedException {
+		final IndexingScheduler single = new IndexingScheduler(1, 1);
+		try {
+			final CountDownLatch blocked = new CountDownLatch(1);
+			final CountDownLatch done = new CountDownLatch(3);
+			final List<Integer> order = Lists.newArrayList();
+			single.schedule(new Runnable() {
+				public void run() {
+					try {
+						blocked.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}, 0, 0L);
+			for (final int p : new int[] { 10, 5, 0 }) {
+				single.schedule(new Runnable() {
+					public void run() {
+						synchronized (order) {
+							order.add(p);
+						}
+						done.countDown();
+					}
+				}, p, 0L);
+			}
+			assertEquals(single.getQueueSize(), 3);
+			blocked.countDown();
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertEquals(order, Lists.newArrayList(0, 5, 10));
+		} finally {
+			single.shutdown();
+		}
+	}
+
+	@Test
+	public void permits() {
+		final IndexingScheduler s = new IndexingScheduler(2, 1, 1);
+		try {
+			assertTrue(s.tryAcquireWriter(false));
+			assertFalse(s.tryAcquireWriter(false));
+			// Reindexing tasks use their own permits.
+			assertTrue(s.tryAcquireWriter(true));
+			assertFalse(s.tryAcquireWriter(true));
+			assertEquals(s.getActiveWriters(), 1);
+			assertEquals(s.getActiveReindexers(), 1);
+			s.releaseWriter(true);
+			s.releaseWriter(false);
+			assertEquals(s.getActiveWriters(), 0);
+			assertEquals(s.getActiveReindexers(), 0);
+		} finally {
+			s.shutdown();
+		}
+	}
+
+	@Test
+	public void services() throws InterruptedException {
+		final List<RAMStore<Long>> stores = Lists.newArrayList();
+		final List<DefaultIndexerService<Long, Object>> services = Lists.newArrayList();
+		for (int i = 0; i < 5; i++) {
+			final RAMStore<Long> store = new RAMStore<Long>();
+			final DefaultIndexerService<Long, Object> service = new DefaultIndexerService<Long, Object>(store,
+					new DefaultWriter(), new FiniteIndexer());
+			service.setDelays(Delays.constant(10L));
+			service.setScheduler(scheduler);
+			stores.add(store);
+			services.add(service);
+			service.start();
+		}
+		for (int i = 0; i < 100 && !done(stores); i++) {
+			Thread.sleep(50L);
+		}
+		for (DefaultIndexerService<Long, Object> service : services) {
+			service.stop();
+		}
+		assertTrue(done(stores));
+		assertEquals(scheduler.getActiveWriters(), 0);
+		assertTrue(scheduler.getCompletedTasks() > 0);
+	}
+
+	private static boolean done(List<RAMStore<Long>> stores) {
+		for (RAMStore<Long> store : stores) {
+			if (!Long.valueOf(10L).equals(store.getCheckpoint())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final class FiniteIndexer implements Indexer<Long, Object> {
+		public Batch<Long, Object> index(Long checkpoint) throws InterruptedException {
+			final long cp = checkpoint != null ? checkpoint.longValue() : 0L;
+			if (cp >= 10L) {
+				return null;
+			}
+			final int start = (int) cp * 100;
+			return DocumentSupport.batch(start, start + 99, cp + 1);
+		}
+
+		public void afterCommit(Object payload) {
+		}
+	}
+}
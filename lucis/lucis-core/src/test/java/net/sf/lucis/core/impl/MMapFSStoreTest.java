@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import net.sf.lucis.core.Checkpoints;
+import net.sf.lucis.core.DirectoryFactories;
+import net.sf.lucis.core.Store;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for file system-based stores with memory-mapped, NRT caching directories.
+ * @author Andres Rodriguez
+ */
+@Test
+public class MMapFSStoreTest extends AbstractStoreTest {
+	private String indexDir;
+
+	public MMapFSStoreTest() {
+	}
+
+	@Override
+	Store<Long> createStore() {
+		return new FSStore<Long>(Checkpoints.ofLong(), indexDir, DirectoryFactories.nrtCaching(
+				DirectoryFactories.mmap(1 << 20, true), 5.0, 60.0));
+	}
+
+	@BeforeClass
+	public void before() {
+		indexDir = DirectorySupport.create();
+	}
+
+	@AfterClass
+	public void after() {
+		DirectorySupport.delete(indexDir);
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static net.sf.lucis.core.impl.DocumentSupport.batch;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.lucis.core.DirectoryProvider;
+import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.LucisSearcher;
+import net.sf.lucis.core.Queryable;
+import net.sf.lucis.core.RefreshListener;
+import net.sf.lucis.core.support.Queryables;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests for managed reader acquisition.
+ * @author Andres Rodriguez
+ */
+public class ManagedReaderTest {
+	private final DefaultWriter writer = new DefaultWriter();
+
+	@Test
+	public void missingIndex() throws Exception {
+		final RAMStore<Long> store = new RAMStore<Long>();
+		final AtomicInteger refreshes = new AtomicInteger();
+		store.addRefreshListener(new RefreshListener() {
+			public void refreshed(DirectoryProvider provider, IndexReader reader) {
+				refreshes.incrementAndGet();
+			}
+		});
+		final IndexReader r1 = store.getManagedReader();
+		final IndexReader r2 = store.getManagedReader();
+		// The empty reader is reused while the store does not change.
+		assertSame(r1, r2);
+		assertSame(store.getPublishedReader(), r1);
+		assertEquals(refreshes.get(), 1);
+		r1.decRef();
+		r2.decRef();
+		assertEquals(writer.write(store, batch(1, 10, 1L)), IndexStatus.OK);
+		final IndexReader r3 = store.getManagedReader();
+		assertEquals(r3.numDocs(), 10);
+		assertEquals(refreshes.get(), 2);
+		r3.decRef();
+	}
+
+	@Test
+	public void reuse() throws Exception {
+		final RAMStore<Long> store = new RAMStore<Long>();
+		assertEquals(writer.write(store, batch(1, 10, 1L)), IndexStatus.OK);
+		final IndexReader r1 = store.getManagedReader();
+		final IndexReader r2 = store.getManagedReader();
+		assertSame(r1, r2);
+		assertEquals(writer.write(store, batch(11, 20, 2L)), IndexStatus.OK);
+		final IndexReader r3 = store.getManagedReader();
+		assertNotSame(r1, r3);
+		assertEquals(r3.numDocs(), 20);
+		// The previous reader is still usable until released.
+		assertEquals(r1.numDocs(), 10);
+		r1.decRef();
+		r2.decRef();
+		assertEquals(r1.getRefCount(), 0);
+		r3.decRef();
+	}
+
+	@Test
+	public void concurrent() throws Exception {
+		final RAMStore<Long> store = new RAMStore<Long>();
+		final Queryable queryable = Queryables.managed(store);
+		final AtomicBoolean stop = new AtomicBoolean();
+		final AtomicInteger errors = new AtomicInteger();
+		final int threads = 4;
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			new Thread(new Runnable() {
+				public void run() {
+					try {
+						while (!stop.get()) {
+							DocumentSupport.count(queryable);
+						}
+					} catch (RuntimeException e) {
+						errors.incrementAndGet();
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		for (int i = 0; i < 20; i++) {
+			assertEquals(writer.write(store, batch(i * 50, i * 50 + 49, i + 1L)), IndexStatus.OK);
+		}
+		stop.set(true);
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(errors.get(), 0);
+		assertEquals(DocumentSupport.count(queryable), 1000);
+	}
+
+	@Test
+	public void leases() throws Exception {
+		final RAMStore<Long> store = new RAMStore<Long>();
+		assertEquals(writer.write(store, batch(1, 10, 1L)), IndexStatus.OK);
+		final IndexReader reader = store.getManagedReader();
+		final int refs = reader.getRefCount();
+		final ManagedSingleSearcherProvider provider = ManagedSingleSearcherProvider.of(store);
+		final LucisSearcher s1 = provider.get();
+		final LucisSearcher s2 = provider.get();
+		assertEquals(reader.getRefCount(), refs + 2);
+		s1.close();
+		s1.close();
+		s2.close();
+		assertEquals(reader.getRefCount(), refs);
+		reader.decRef();
+	}
+
+	@Test
+	public void multiLeases() throws Exception {
+		final RAMStore<Long> store1 = new RAMStore<Long>();
+		final RAMStore<Long> store2 = new RAMStore<Long>();
+		assertEquals(writer.write(store1, batch(1, 10, 1L)), IndexStatus.OK);
+		assertEquals(writer.write(store2, batch(11, 30, 1L)), IndexStatus.OK);
+		final ManagedMultiSearcherProvider provider = ManagedMultiSearcherProvider.of(ImmutableList
+				.<DirectoryProvider> of(store1, store2));
+		final IndexReader reader = store1.getManagedReader();
+		provider.get().close();
+		final int refs = reader.getRefCount();
+		final LucisSearcher s1 = provider.get();
+		final LucisSearcher s2 = provider.get();
+		// Sub-readers are referenced once by the shared multi reader.
+		assertEquals(reader.getRefCount(), refs);
+		assertEquals(s1.search(new MatchAllDocsQuery(), null, 1).totalHits, 30);
+		s1.close();
+		s2.close();
+		assertEquals(writer.write(store1, batch(31, 40, 2L)), IndexStatus.OK);
+		provider.get().close();
+		// The previous multi reader has been released.
+		assertEquals(reader.getRefCount(), 1);
+		reader.decRef();
+	}
+
+}
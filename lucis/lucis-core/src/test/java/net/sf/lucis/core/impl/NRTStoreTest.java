@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static net.sf.lucis.core.impl.DocumentSupport.batch;
+import static net.sf.lucis.core.impl.DocumentSupport.termId;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.lucis.core.Batch;
+import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.Queryable;
+import net.sf.lucis.core.Writer;
+import net.sf.lucis.core.support.Queryables;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the near-real-time store.
+ * @author Andres Rodriguez
+ */
+public class NRTStoreTest {
+	private final Writer writer = new NRTWriter();
+	private RAMStore<Long> durable;
+	private NRTStore<Long> store;
+	private Queryable nrt;
+	private Queryable committed;
+
+	@Test
+	public void create() {
+		durable = new RAMStore<Long>();
+		store = new NRTStore<Long>(durable);
+		store.setCommitDelay(Long.MAX_VALUE);
+		nrt = Queryables.managed(store);
+		committed = Queryables.simple(durable);
+		DocumentSupport.notFound(nrt, 5);
+	}
+
+	@Test(dependsOnMethods = "create")
+	public void add() throws InterruptedException {
+		assertEquals(writer.write(store, batch(1, 100, 1L)), IndexStatus.OK);
+		assertEquals(store.getCheckpoint(), Long.valueOf(1L));
+		assertNull(durable.getCheckpoint());
+		DocumentSupport.found(nrt, 5);
+		DocumentSupport.notFound(committed, 5);
+	}
+
+	@Test(dependsOnMethods = "add")
+	public void delete() throws InterruptedException {
+		final Batch.Builder<Long> builder = Batch.builder();
+		assertEquals(writer.write(store, builder.delete(termId(10)).build(2L)), IndexStatus.OK);
+		DocumentSupport.found(nrt, 5);
+		DocumentSupport.notFound(nrt, 10);
+		assertNull(durable.getCheckpoint());
+	}
+
+	@Test(dependsOnMethods = "delete")
+	public void commit() {
+		store.commit();
+		assertEquals(durable.getCheckpoint(), Long.valueOf(2L));
+		DocumentSupport.found(committed, 5);
+		DocumentSupport.notFound(committed, 10);
+	}
+
+	@Test(dependsOnMethods = "commit")
+	public void close() throws Exception {
+		assertEquals(writer.write(store, batch(200, 300, 3L)), IndexStatus.OK);
+		store.close();
+		assertEquals(durable.getCheckpoint(), Long.valueOf(3L));
+		DocumentSupport.found(committed, 250);
+	}
+
+	@Test(dependsOnMethods = "close")
+	public void afterCommit() throws InterruptedException {
+		final AtomicInteger runs = new AtomicInteger();
+		final Runnable task = new Runnable() {
+			public void run() {
+				runs.incrementAndGet();
+			}
+		};
+		// Nothing pending
+		store.afterCommit(task);
+		assertEquals(runs.get(), 1);
+		// Rolled back
+		assertEquals(writer.write(store, batch(400, 410, 4L)), IndexStatus.OK);
+		store.afterCommit(task);
+		assertEquals(runs.get(), 1);
+		store.rollback();
+		assertEquals(runs.get(), 1);
+		assertEquals(store.getCheckpoint(), Long.valueOf(3L));
+		// Committed
+		assertEquals(writer.write(store, batch(400, 410, 4L)), IndexStatus.OK);
+		store.afterCommit(task);
+		assertEquals(runs.get(), 1);
+		store.commit();
+		assertEquals(runs.get(), 2);
+	}
+
+}
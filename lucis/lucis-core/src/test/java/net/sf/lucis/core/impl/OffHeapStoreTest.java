@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import net.sf.lucis.core.Store;
+import net.sf.lucis.core.support.Queryables;
+
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for off-heap stores.
+ * @author Andres Rodriguez
+ */
+@Test
+public class OffHeapStoreTest extends AbstractStoreTest {
+	public OffHeapStoreTest() {
+	}
+
+	@Override
+	Store<Long> createStore() {
+		return new OffHeapStore<Long>();
+	}
+
+	@Test
+	public void blocks() throws Exception {
+		final OffHeapDirectory d = new OffHeapDirectory(16);
+		final IndexOutput out = d.createOutput("test");
+		for (int i = 0; i < 100; i++) {
+			out.writeInt(i);
+		}
+		out.writeBytes(new byte[50], 50);
+		// Overwrite at a block boundary.
+		out.seek(32);
+		out.writeInt(-8);
+		assertEquals(out.length(), 450L);
+		out.flush();
+		// Nothing is published until the output is closed.
+		assertEquals(d.fileLength("test"), 0L);
+		assertEquals(d.openInput("test").length(), 0L);
+		out.close();
+		assertEquals(d.fileLength("test"), 450L);
+		// 28 full blocks plus a trimmed one.
+		assertEquals(d.sizeInBytes(), 450L);
+		final IndexInput in = d.openInput("test");
+		for (int i = 0; i < 100; i++) {
+			assertEquals(in.readInt(), i == 8 ? -8 : i);
+		}
+		in.seek(64);
+		assertEquals(in.readInt(), 16);
+		final IndexInput clone = (IndexInput) in.clone();
+		assertEquals(clone.getFilePointer(), 68L);
+		assertEquals(clone.readInt(), 17);
+		assertEquals(in.readInt(), 17);
+		in.seek(450);
+		assertEquals(in.getFilePointer(), 450L);
+		in.close();
+		d.deleteFile("test");
+		assertTrue(d.listAll().length == 0);
+		d.close();
+	}
+
+	@Test
+	public void copy() throws Exception {
+		final OffHeapStore<Long> source = new OffHeapStore<Long>();
+		write(source, DocumentSupport.batch(1, 10, 1L));
+		final OffHeapStore<Long> copy = new OffHeapStore<Long>(source);
+		assertEquals(copy.getCheckpoint(), Long.valueOf(1L));
+		assertEquals(DocumentSupport.count(Queryables.simple(copy)), 10);
+		copy.close();
+		source.close();
+	}
+}
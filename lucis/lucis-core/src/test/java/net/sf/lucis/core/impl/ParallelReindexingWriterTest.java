@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static net.sf.lucis.core.impl.DocumentSupport.document;
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.lucis.core.Adder;
+import net.sf.lucis.core.ConcurrentAdder;
+import net.sf.lucis.core.ParallelFullIndexer;
+import net.sf.lucis.core.Queryable;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for parallel full indexers.
+ * @author Andres Rodriguez
+ */
+public class ParallelReindexingWriterTest extends AbstractDirectoryTest {
+	private static final int THREADS = 4;
+	private static final int DOCUMENTS = 10000;
+
+	private ExecutorService executor;
+	private ReindexingFSStore store;
+	private Queryable queryable;
+
+	@BeforeClass
+	public void init() {
+		executor = Executors.newFixedThreadPool(THREADS);
+		store = new ReindexingFSStore(getIndexDir());
+		queryable = new DefaultQueryable(SingleSearcherProvider.of(store));
+	}
+
+	@AfterClass
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void reindex() throws InterruptedException {
+		new DefaultReindexingWriter().reindex(store, new Indexer());
+		assertEquals(store.getCheckpoint(), "1");
+		assertEquals(DocumentSupport.count(queryable), DOCUMENTS);
+		DocumentSupport.found(queryable, 0);
+		DocumentSupport.found(queryable, DOCUMENTS - 1);
+	}
+
+	private class Indexer implements ParallelFullIndexer<Object> {
+		public Object index(final ConcurrentAdder adder) throws InterruptedException {
+			final List<Future<Object>> futures = Lists.newArrayList();
+			for (int t = 0; t < THREADS; t++) {
+				final int thread = t;
+				futures.add(executor.submit(new Callable<Object>() {
+					public Object call() throws Exception {
+						for (int i = thread; i < DOCUMENTS; i += THREADS) {
+							adder.add(document(i));
+						}
+						return null;
+					}
+				}));
+			}
+			try {
+				for (Future<Object> future : futures) {
+					future.get();
+				}
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+			adder.setCheckpoint("1");
+			return null;
+		}
+
+		public Object index(Adder adder) throws InterruptedException {
+			for (int i = 0; i < DOCUMENTS; i++) {
+				adder.add(document(i));
+			}
+			adder.setCheckpoint("1");
+			return null;
+		}
+
+		public void afterCommit(Object payload) {
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static net.sf.lucis.core.impl.DocumentSupport.batch;
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.derquinse.lucis.Page;
+import net.sf.lucis.core.DirectoryProvider;
+import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.LucisQuery;
+import net.sf.lucis.core.Queryable;
+import net.sf.lucis.core.support.Queryables;
+
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for parallel federated searches.
+ * @author Andres Rodriguez
+ */
+public class ParallelSearchTest {
+	private static final int STORES = 4;
+	private static final int DOCUMENTS = 250;
+
+	private ExecutorService executor;
+	private Queryable queryable;
+
+	@BeforeClass
+	public void init() throws InterruptedException {
+		executor = Executors.newFixedThreadPool(STORES);
+		final DefaultWriter writer = new DefaultWriter();
+		final List<DirectoryProvider> stores = Lists.newArrayList();
+		for (int i = 0; i < STORES; i++) {
+			final RAMStore<Long> store = new RAMStore<Long>();
+			assertEquals(writer.write(store, batch(i * DOCUMENTS, (i + 1) * DOCUMENTS - 1, 1L)), IndexStatus.OK);
+			stores.add(store);
+		}
+		queryable = Queryables.managed(stores, executor);
+	}
+
+	@AfterClass
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void search() {
+		assertEquals(DocumentSupport.count(queryable), STORES * DOCUMENTS);
+		for (int i = 0; i < STORES * DOCUMENTS; i += 97) {
+			DocumentSupport.found(queryable, i);
+		}
+		final Page<DocumentSupport.Node> page = queryable.query(LucisQuery.page(new MatchAllDocsQuery(),
+				DocumentSupport.MAPPER, 10, 20));
+		assertEquals(page.getTotalHits(), STORES * DOCUMENTS);
+		assertEquals(page.getItems().size(), 20);
+	}
+
+}
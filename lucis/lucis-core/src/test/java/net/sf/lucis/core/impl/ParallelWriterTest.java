@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static net.sf.lucis.core.impl.DocumentSupport.batch;
+import static net.sf.lucis.core.impl.DocumentSupport.termId;
+import static org.testng.Assert.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.lucis.core.Batch;
+import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.Queryable;
+import net.sf.lucis.core.support.Queryables;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for parallel additions in the default writer.
+ * @author Andres Rodriguez
+ */
+public class ParallelWriterTest {
+	private ExecutorService executor;
+	private DefaultWriter writer;
+	private RAMStore<Long> store;
+	private Queryable queryable;
+
+	@BeforeClass
+	public void init() {
+		executor = Executors.newFixedThreadPool(4);
+		writer = new DefaultWriter();
+		writer.setExecutor(executor);
+		writer.setParallelism(4);
+		writer.setParallelThreshold(100);
+		store = new RAMStore<Long>();
+		queryable = Queryables.simple(store);
+	}
+
+	@AfterClass
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void add() throws InterruptedException {
+		assertEquals(writer.write(store, batch(1, 10000, 1L)), IndexStatus.OK);
+		assertEquals(DocumentSupport.count(queryable), 10000);
+		DocumentSupport.found(queryable, 1);
+		DocumentSupport.found(queryable, 5000);
+		DocumentSupport.found(queryable, 10000);
+	}
+
+	@Test(dependsOnMethods = "add")
+	public void update() throws InterruptedException {
+		final Batch.Builder<Long> builder = Batch.builder();
+		for (int i = 1; i <= 500; i++) {
+			builder.update(DocumentSupport.document(i), termId(i));
+		}
+		assertEquals(writer.write(store, builder.build(2L)), IndexStatus.OK);
+		assertEquals(DocumentSupport.count(queryable), 10000);
+		DocumentSupport.found(queryable, 250);
+	}
+
+}
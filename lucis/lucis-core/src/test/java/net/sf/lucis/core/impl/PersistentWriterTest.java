@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static net.sf.lucis.core.impl.DocumentSupport.batch;
+import static org.testng.Assert.assertEquals;
+import net.sf.lucis.core.Batch;
+import net.sf.lucis.core.Factory;
+import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.Queryable;
+import net.sf.lucis.core.support.Queryables;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the persistent mode of the default writer.
+ * @author Andres Rodriguez
+ */
+public class PersistentWriterTest {
+	private final DefaultWriter writer = new DefaultWriter(Factory.get().writerConfigSupplier(), true);
+	private final RAMStore<Long> store = new RAMStore<Long>();
+	private final Queryable queryable = Queryables.managed(store);
+
+	@Test
+	public void add() throws InterruptedException {
+		assertEquals(writer.write(store, batch(1, 100, 1L)), IndexStatus.OK);
+		assertEquals(writer.write(store, batch(101, 200, 2L)), IndexStatus.OK);
+		assertEquals(store.getCheckpoint(), Long.valueOf(2L));
+		DocumentSupport.found(queryable, 5);
+		DocumentSupport.found(queryable, 150);
+	}
+
+	@Test(dependsOnMethods = "add")
+	public void recreate() throws InterruptedException {
+		final Batch.Builder<Long> builder = Batch.builder();
+		builder.recreate();
+		for (int i = 300; i <= 310; i++) {
+			builder.add(DocumentSupport.document(i));
+		}
+		assertEquals(writer.write(store, builder.build(3L)), IndexStatus.OK);
+		DocumentSupport.notFound(queryable, 5);
+		DocumentSupport.found(queryable, 305);
+		assertEquals(DocumentSupport.count(queryable), 11);
+	}
+
+	@Test(dependsOnMethods = "recreate")
+	public void close() throws Exception {
+		writer.close(store);
+		assertEquals(writer.write(store, batch(400, 410, 4L)), IndexStatus.OK);
+		DocumentSupport.found(queryable, 405);
+		writer.close();
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static net.sf.lucis.core.impl.DocumentSupport.batch;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.lucis.core.DirectoryProvider;
+import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.Queryable;
+import net.sf.lucis.core.RefreshListener;
+import net.sf.lucis.core.support.Queryables;
+
+import org.apache.lucene.index.IndexReader;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for background reader refresh.
+ * @author Andres Rodriguez
+ */
+public class RefreshTest {
+	private final DefaultWriter writer = new DefaultWriter();
+
+	@Test
+	public void refresh() throws Exception {
+		final RAMStore<Long> store = new RAMStore<Long>();
+		final BlockingQueue<Integer> published = new LinkedBlockingQueue<Integer>();
+		store.addRefreshListener(new RefreshListener() {
+			public void refreshed(DirectoryProvider provider, IndexReader reader) {
+				published.add(reader.numDocs());
+			}
+		});
+		store.setMaxStaleness(60000L);
+		store.startRefresh();
+		try {
+			assertTrue(store.isRefreshing());
+			// First reader, opened in the background.
+			assertEquals(published.poll(5, TimeUnit.SECONDS), Integer.valueOf(0));
+			assertEquals(writer.write(store, batch(1, 10, 1L)), IndexStatus.OK);
+			assertEquals(published.poll(5, TimeUnit.SECONDS), Integer.valueOf(10));
+			final Queryable queryable = Queryables.managed(store);
+			assertEquals(DocumentSupport.count(queryable), 10);
+			assertEquals(writer.write(store, batch(11, 20, 2L)), IndexStatus.OK);
+			assertEquals(published.poll(5, TimeUnit.SECONDS), Integer.valueOf(20));
+			assertEquals(DocumentSupport.count(queryable), 20);
+		} finally {
+			store.stopRefresh();
+		}
+		assertFalse(store.isRefreshing());
+	}
+
+}
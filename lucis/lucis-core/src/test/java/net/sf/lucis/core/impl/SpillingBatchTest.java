@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+
+import net.sf.lucis.core.Batch;
+import net.sf.lucis.core.BatchException;
+import net.sf.lucis.core.Batch.Addition;
+import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.LucisQuery;
+import net.sf.lucis.core.Queryable;
+import net.sf.lucis.core.support.Queryables;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for batches spilled to disk.
+ * @author Andres Rodriguez
+ */
+public class SpillingBatchTest extends AbstractDirectoryTest {
+	private Batch<Long, Object> batch(int from, int to, long cp, long threshold) throws InterruptedException {
+		final Batch.Builder<Long> builder = Batch.builder(new File(getIndexDir()), threshold);
+		for (int i = from; i <= to; i++) {
+			builder.add(DocumentSupport.document(i));
+		}
+		return builder.build(cp);
+	}
+
+	@Test
+	public void memory() throws InterruptedException {
+		final Batch<Long, Object> batch = batch(1, 100, 1L, Long.MAX_VALUE);
+		assertFalse(batch.isSpilled());
+		assertEquals(batch.size(), 100);
+		batch.discard();
+	}
+
+	@Test
+	public void spill() throws InterruptedException {
+		final Batch<Long, Object> batch = batch(1, 1000, 1L, 1000L);
+		assertTrue(batch.isSpilled());
+		assertEquals(batch.size(), 1000);
+		assertEquals(batch.getAdditions().size(), 1000);
+		int i = 1;
+		for (Addition addition : batch.additions()) {
+			assertEquals(addition.getDocument().get(DocumentSupport.ID), DocumentSupport.value(i++));
+		}
+		final RAMStore<Long> store = new RAMStore<Long>();
+		final Queryable queryable = Queryables.simple(store);
+		assertEquals(new DefaultWriter().write(store, batch), IndexStatus.OK);
+		assertEquals(DocumentSupport.count(queryable), 1000);
+		DocumentSupport.found(queryable, 500);
+		batch.discard();
+	}
+
+	@Test
+	public void pinned() throws InterruptedException {
+		final Batch.Builder<Long> builder = Batch.builder(new File(getIndexDir()), 0L);
+		builder.add(DocumentSupport.document(1));
+		final Document document = DocumentSupport.document(2);
+		document.add(new Field("reader", new StringReader("text")));
+		builder.add(document);
+		builder.add(DocumentSupport.document(3));
+		final Batch<Long, Object> batch = builder.build(1L);
+		assertTrue(batch.isSpilled());
+		int i = 1;
+		for (Addition addition : batch.additions()) {
+			assertEquals(addition.getDocument().get(DocumentSupport.ID), DocumentSupport.value(i++));
+		}
+		assertEquals(i, 4);
+		batch.discard();
+	}
+
+	@Test
+	public void numeric() throws Exception {
+		// No memory is allowed for pinned additions, so numeric fields must be spilled.
+		final Batch.Builder<Long> builder = Batch.builder(new File(getIndexDir()), 0L, 0L);
+		for (int i = 1; i <= 10; i++) {
+			final Document document = DocumentSupport.document(i);
+			document.add(new NumericField("number", Field.Store.YES, true).setIntValue(i));
+			builder.add(document);
+		}
+		final Batch<Long, Object> batch = builder.build(1L);
+		assertTrue(batch.isSpilled());
+		final RAMStore<Long> store = new RAMStore<Long>();
+		assertEquals(new DefaultWriter().write(store, batch), IndexStatus.OK);
+		final Queryable queryable = Queryables.simple(store);
+		final Query query = NumericRangeQuery.newIntRange("number", 3, 7, true, true);
+		assertEquals(queryable.query(LucisQuery.count(query, null)).getTotalHits(), 5);
+		batch.discard();
+	}
+
+	@Test(expectedExceptions = BatchException.class)
+	public void pinnedLimit() throws InterruptedException {
+		final Batch.Builder<Long> builder = Batch.builder(new File(getIndexDir()), 0L, 0L);
+		builder.add(DocumentSupport.document(1));
+		final Document document = DocumentSupport.document(2);
+		document.add(new Field("reader", new StringReader("text")));
+		try {
+			builder.add(document);
+		} finally {
+			builder.build(1L).discard();
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static net.sf.lucis.core.impl.DocumentSupport.batch;
+import static net.sf.lucis.core.impl.DocumentSupport.document;
+import static net.sf.lucis.core.impl.DocumentSupport.termId;
+import static org.testng.Assert.assertEquals;
+import net.sf.lucis.core.Batch;
+import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.LucisQuery;
+import net.sf.lucis.core.Queryable;
+import net.sf.lucis.core.support.Queryables;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for batch updates.
+ * @author Andres Rodriguez
+ */
+public class UpdateTest {
+	private final DefaultWriter writer = new DefaultWriter();
+	private final RAMStore<Long> store = new RAMStore<Long>();
+	private final Queryable queryable = Queryables.simple(store);
+
+	private int analyzed(int value) {
+		final TermQuery query = new TermQuery(new Term(DocumentSupport.ANALIZED, DocumentSupport.value(value)));
+		return queryable.query(LucisQuery.count(query, null)).getTotalHits();
+	}
+
+	@Test
+	public void builder() throws InterruptedException {
+		final Batch.Builder<Long> builder = Batch.builder();
+		builder.delete(termId(1)).delete(termId(2));
+		builder.update(document(1), termId(1)).update(document(3), termId(1));
+		builder.add(document(4));
+		final Batch<Long, Object> b = builder.build(1L);
+		assertEquals(b.size(), 3);
+		assertEquals(b.getDeletions().size(), 1);
+		assertEquals(b.getDeletions().get(0), termId(2));
+		assertEquals(b.getUpdates().size(), 1);
+		assertEquals(b.getUpdates().get(0).getTerm(), termId(1));
+		assertEquals(b.getUpdates().get(0).getDocument().get(DocumentSupport.ANALIZED), DocumentSupport.value(3));
+	}
+
+	@Test
+	public void update() throws InterruptedException {
+		assertEquals(writer.write(store, batch(1, 100, 1L)), IndexStatus.OK);
+		final Batch.Builder<Long> builder = Batch.builder();
+		for (int i = 1; i <= 50; i++) {
+			builder.update(document(1000 + i), termId(i));
+			builder.update(document(i), termId(i));
+		}
+		builder.delete(termId(60));
+		builder.add(document(200));
+		assertEquals(writer.write(store, builder.build(2L)), IndexStatus.OK);
+		assertEquals(DocumentSupport.count(queryable), 100);
+		DocumentSupport.found(queryable, 1);
+		DocumentSupport.found(queryable, 50);
+		DocumentSupport.notFound(queryable, 60);
+		DocumentSupport.found(queryable, 200);
+		assertEquals(analyzed(1001), 0);
+		assertEquals(analyzed(1), 1);
+	}
+
+}
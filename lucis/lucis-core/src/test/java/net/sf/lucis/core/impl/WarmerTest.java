@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.lucis.core.impl;
+
+import static net.sf.lucis.core.impl.DocumentSupport.batch;
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+
+import net.sf.lucis.core.IndexStatus;
+import net.sf.lucis.core.LucisSearcher;
+import net.sf.lucis.core.Queryable;
+import net.sf.lucis.core.Warmer;
+import net.sf.lucis.core.Warmers;
+import net.sf.lucis.core.support.Queryables;
+
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for reader warmers.
+ * @author Andres Rodriguez
+ */
+public class WarmerTest {
+	private final DefaultWriter writer = new DefaultWriter();
+
+	@Test
+	public void warm() throws Exception {
+		final RAMStore<Long> store = new RAMStore<Long>();
+		final List<Integer> warmed = Lists.newArrayList();
+		final Warmer counter = new Warmer() {
+			public void warm(LucisSearcher searcher) {
+				warmed.add(searcher.search(new MatchAllDocsQuery(), null, 1).totalHits);
+			}
+		};
+		final Sort sort = new Sort(new SortField(DocumentSupport.ID, SortField.STRING));
+		store.setWarmer(Warmers.compose(Warmers.sorts(ImmutableList.of(sort)), counter));
+		final Queryable queryable = Queryables.managed(store);
+		assertEquals(writer.write(store, batch(1, 10, 1L)), IndexStatus.OK);
+		assertEquals(DocumentSupport.count(queryable), 10);
+		assertEquals(warmed.size(), 1);
+		assertEquals(DocumentSupport.count(queryable), 10);
+		assertEquals(warmed.size(), 1);
+		assertEquals(writer.write(store, batch(11, 20, 2L)), IndexStatus.OK);
+		assertEquals(DocumentSupport.count(queryable), 20);
+		assertEquals(warmed, Lists.newArrayList(10, 20));
+	}
+
+}